@@ -0,0 +1,58 @@
+package dd.project;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Wire format between StorageAgent and StorageCollector. After a handshake
+ * (magic, version, machine name, watched directory) the agent sends typed records:
+ *
+ * <pre>
+ * STORE       filesystem, mount, then capturedAt/size/used/avail as varint deltas
+ *             from the previous STORE of that mount on this connection
+ * FILE_UPSERT name, size, mtime millis (varints)
+ * FILE_REMOVE name
+ * SYNC        the full listing sent after connecting is complete
+ * HEARTBEAT   nothing changed for a while; keeps dead connections detectable
+ * </pre>
+ *
+ * Strings are {@link DataOutput#writeUTF}; varints are zigzag LEB128.
+ */
+public final class AgentProtocol {
+
+    public static final int MAGIC = 0x44444147; // "DDAG"
+    public static final int VERSION = 1;
+
+    public static final byte STORE = 1;
+    public static final byte FILE_UPSERT = 2;
+    public static final byte FILE_REMOVE = 3;
+    public static final byte SYNC = 4;
+    public static final byte HEARTBEAT = 5;
+
+    public static final int DEFAULT_PORT = 9750;
+
+    private AgentProtocol() {
+    }
+
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    public static long readVarLong(DataInput in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,103 @@
+package dd.project;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Runs a collector and an agent as two separate JVMs on this machine and checks that
+ * changes in a watched directory come out of the collector as alerts.
+ */
+public class AgentPushCheck {
+
+    private static final long WAIT_MS = 20000;
+
+    @Test
+    public void testAgentStreamsToCollector() throws Exception {
+        Path directory = Files.createTempDirectory("postImageProcessor");
+        Files.write(directory.resolve("fresh.jp2"), new byte[128]);
+        Path old = Files.write(directory.resolve("old.jp2"), new byte[256]);
+        Files.setLastModifiedTime(old, FileTime.from(Instant.now().minusSeconds(3 * 86400)));
+
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+
+        List<Process> processes = new ArrayList<>();
+        try {
+            // Threshold 0 so the temp directory's filesystem always raises a usage alert.
+            BlockingQueue<String> collectorOutput = new LinkedBlockingQueue<>();
+            processes.add(start(collectorOutput, "dd.project.StorageCollector", "--port", String.valueOf(port),
+                    "--usage-threshold", "0"));
+            awaitLine(collectorOutput, "Collector listening");
+
+            processes.add(start(new LinkedBlockingQueue<>(), "dd.project.StorageAgent", "--collector", "127.0.0.1:" + port,
+                    "--name", "e2e-node", "--mount", directory.toString(), "--watch", directory.toString(),
+                    "--interval-ms", "200"));
+            awaitLine(collectorOutput, "Agent e2e-node connected");
+            awaitLine(collectorOutput, "ALERT e2e-node - " + directory + " used storage");
+            awaitLine(collectorOutput, "ALERT e2e-node - " + directory + " contains 1 old files");
+
+            Files.delete(old);
+            awaitLine(collectorOutput, "RESOLVED e2e-node - " + directory + " contains 1 old files");
+        } finally {
+            for (Process process : processes) {
+                process.destroyForcibly();
+            }
+            try (Stream<Path> children = Files.list(directory)) {
+                children.forEach(child -> child.toFile().delete());
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static Process start(BlockingQueue<String> output, String mainClass, String... args) throws IOException {
+        List<String> command = new ArrayList<>(Arrays.asList(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-cp", System.getProperty("java.class.path"), mainClass));
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        Thread pump = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                for (String line; (line = reader.readLine()) != null; ) {
+                    System.out.println("[" + mainClass.substring(mainClass.lastIndexOf('.') + 1) + "] " + line);
+                    output.add(line);
+                }
+            } catch (IOException e) {
+                // Process went away.
+            }
+        });
+        pump.setDaemon(true);
+        pump.start();
+        return process;
+    }
+
+    private static void awaitLine(BlockingQueue<String> output, String fragment) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        for (long remaining; (remaining = deadline - System.currentTimeMillis()) > 0; ) {
+            String line = output.poll(remaining, TimeUnit.MILLISECONDS);
+            if (line != null && line.contains(fragment)) {
+                return;
+            }
+        }
+        Assert.fail("Collector never printed \"" + fragment + "\" within " + WAIT_MS + "ms");
+    }
+}
@@ -0,0 +1,259 @@
+package dd.project;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.ContentType;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Holds alert mail for {@code alert.digest.window.ms} per recipient set and sends what
+ * arrived in that window as one grouped HTML message. During a storage-pressure event,
+ * pp1storage, pp4storage, dgx4storgae and the postImageProcessor scanners then mail each
+ * audience once instead of once per check.
+ *
+ * Messages are grouped only when sender, account and To/Cc/Bcc are identical, so nobody
+ * sees an alert they were not addressed on. A window flushes early once it holds
+ * {@code alert.digest.max.alerts} alerts. A window with a single alert sends that alert
+ * unchanged. Digests go out through AlertOutbox, which retries them; windows still open
+ * at shutdown are sent before the JVM exits.
+ */
+public final class AlertDigest implements AutoCloseable {
+
+    private static final AlertDigest SHARED = new AlertDigest(
+            Long.getLong("alert.digest.window.ms", 120000L),
+            Integer.getInteger("alert.digest.max.alerts", 50),
+            AlertOutbox.shared());
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(SHARED::close, "alert-digest-shutdown"));
+    }
+
+    private final long windowMillis;
+    private final int maxAlerts;
+    private final AlertOutbox outbox;
+    private final ScheduledExecutorService timer;
+    private final Map<String, Window> windows = new HashMap<>();
+    private boolean closed;
+
+    private final AtomicLong alerts = new AtomicLong();
+    private final AtomicLong messages = new AtomicLong();
+
+    public AlertDigest(long windowMillis, int maxAlerts, AlertOutbox outbox) {
+        this.windowMillis = windowMillis;
+        this.maxAlerts = maxAlerts;
+        this.outbox = outbox;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "alert-digest");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static AlertDigest shared() {
+        return SHARED;
+    }
+
+    /** Adds a text/html alert to the window for its recipients, opening one if needed. */
+    public void add(Session session, MimeMessage message) throws MessagingException {
+        alerts.incrementAndGet();
+        Window full = null;
+        boolean direct;
+        synchronized (this) {
+            direct = closed;
+            if (!direct) {
+                String key = key(session, message);
+                Window window = windows.get(key);
+                if (window == null) {
+                    window = new Window(key, session);
+                    windows.put(key, window);
+                    Window opened = window;
+                    timer.schedule(() -> expire(opened), windowMillis, TimeUnit.MILLISECONDS);
+                }
+                window.messages.add(message);
+                window.times.add(System.currentTimeMillis());
+                if (window.messages.size() >= maxAlerts) {
+                    windows.remove(key);
+                    full = window;
+                }
+            }
+        }
+        if (direct) {
+            send(session, message, true);
+        } else if (full != null) {
+            send(full, false);
+        }
+    }
+
+    /** Sends every open window now. */
+    public void flush() {
+        for (Window window : takeAll()) {
+            send(window, false);
+        }
+    }
+
+    private void expire(Window window) {
+        synchronized (this) {
+            if (windows.get(window.key) != window) {
+                return;
+            }
+            windows.remove(window.key);
+        }
+        send(window, false);
+    }
+
+    private synchronized List<Window> takeAll() {
+        List<Window> open = new ArrayList<>(windows.values());
+        windows.clear();
+        return open;
+    }
+
+    private void send(Window window, boolean synchronous) {
+        try {
+            MimeMessage message = window.messages.size() == 1 ? window.messages.get(0) : merge(window);
+            if (window.messages.size() > 1) {
+                System.out.println("📧 Digest of " + window.messages.size() + " alerts for " + window.key);
+            }
+            send(window.session, message, synchronous);
+        } catch (MessagingException e) {
+            System.out.println("⚠️ Could not build the alert digest for " + window.key + ": " + e.getMessage());
+        }
+    }
+
+    private void send(Session session, MimeMessage message, boolean synchronous) throws MessagingException {
+        messages.incrementAndGet();
+        String description = "alert email \"" + message.getSubject() + "\"";
+        if (synchronous || !outbox.submit(description, () -> MailDispatcher.forSession(session).send(message))) {
+            try {
+                MailDispatcher.forSession(session).send(message);
+            } catch (MessagingException e) {
+                System.out.println("⚠️ Could not send " + description + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static MimeMessage merge(Window window) throws MessagingException {
+        MimeMessage first = window.messages.get(0);
+        MimeMessage digest = new MimeMessage(window.session);
+        digest.addFrom(first.getFrom());
+        for (Message.RecipientType type : new Message.RecipientType[] {
+                Message.RecipientType.TO, Message.RecipientType.CC, Message.RecipientType.BCC}) {
+            Address[] addresses = first.getRecipients(type);
+            if (addresses != null) {
+                digest.setRecipients(type, addresses);
+            }
+        }
+
+        Set<String> subjects = new LinkedHashSet<>();
+        StringBuilder index = new StringBuilder("<ol>");
+        StringBuilder sections = new StringBuilder();
+        SimpleDateFormat time = new SimpleDateFormat("HH:mm:ss");
+        for (int i = 0; i < window.messages.size(); i++) {
+            MimeMessage message = window.messages.get(i);
+            String subject = message.getSubject() == null ? "(no subject)" : message.getSubject();
+            subjects.add(subject);
+            index.append("<li><a href='#alert").append(i).append("'>").append(escape(subject)).append("</a></li>");
+            sections.append("<hr><h3 id='alert").append(i).append("'>").append(escape(subject)).append("</h3>")
+                    .append("<p style='color:#777;'>Raised at ").append(time.format(new Date(window.times.get(i)))).append("</p>")
+                    .append(html(message));
+        }
+        index.append("</ol>");
+
+        String subject = "ALERT digest: " + window.messages.size() + " alerts - " + String.join("; ", subjects);
+        digest.setSubject(subject.length() > 150 ? subject.substring(0, 149) + "…" : subject);
+        digest.setContent("<p>This is an automated alert digest of " + window.messages.size() + " alerts:</p>"
+                + index + sections, "text/html; charset=UTF-8");
+        return digest;
+    }
+
+    private static String html(MimeMessage message) throws MessagingException {
+        try {
+            Object content = message.getContent();
+            if (content instanceof String) {
+                // Not isMimeType: before saveChanges() the Content-Type header of a setContent() body is not set yet.
+                boolean html = new ContentType(message.getDataHandler().getContentType()).match("text/html");
+                return html ? (String) content : "<pre>" + escape((String) content) + "</pre>";
+            }
+        } catch (IOException e) {
+            // Fall through to the placeholder.
+        }
+        return "<p><i>(alert body could not be included)</i></p>";
+    }
+
+    // Sender, account and each recipient list, sorted so the order addresses were added in does not matter.
+    private static String key(Session session, MimeMessage message) throws MessagingException {
+        StringBuilder key = new StringBuilder();
+        key.append(Arrays.toString(message.getFrom())).append(" via ")
+                .append(session.getProperty("mail.smtp.host")).append(':').append(session.getProperty("mail.smtp.port"));
+        for (Message.RecipientType type : new Message.RecipientType[] {
+                Message.RecipientType.TO, Message.RecipientType.CC, Message.RecipientType.BCC}) {
+            Address[] addresses = message.getRecipients(type);
+            if (addresses != null) {
+                String[] sorted = new String[addresses.length];
+                for (int i = 0; i < addresses.length; i++) {
+                    sorted[i] = addresses[i].toString().toLowerCase();
+                }
+                Arrays.sort(sorted);
+                key.append(' ').append(type).append(Arrays.toString(sorted));
+            }
+        }
+        return key.toString();
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /** Stops windowing and sends whatever is still open, waiting for it. */
+    @Override
+    public void close() {
+        List<Window> open;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            open = takeAll();
+        }
+        timer.shutdownNow();
+        for (Window window : open) {
+            send(window, true);
+        }
+    }
+
+    public long getAlerts() {
+        return alerts.get();
+    }
+
+    public long getMessages() {
+        return messages.get();
+    }
+
+    private static final class Window {
+        final String key;
+        final Session session;
+        final List<MimeMessage> messages = new ArrayList<>();
+        final List<Long> times = new ArrayList<>();
+
+        Window(String key, Session session) {
+            this.key = key;
+            this.session = session;
+        }
+    }
+}
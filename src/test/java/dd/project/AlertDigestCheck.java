@@ -0,0 +1,63 @@
+package dd.project;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Feeds alerts for overlapping audiences into an AlertDigest and checks that a
+ * LocalSmtpServer receives one message per distinct recipient set.
+ */
+public class AlertDigestCheck {
+
+    @Test
+    public void testOneMessagePerRecipientSet() throws Exception {
+        try (LocalSmtpServer smtp = new LocalSmtpServer();
+             AlertOutbox outbox = new AlertOutbox(16, 1, 3, 10, 100, AlertOutbox.Overflow.DROP_NEWEST);
+             AlertDigest digest = new AlertDigest(60000, 50, outbox)) {
+            Session session = smtp.session("digest@example.com");
+            for (String host : new String[] {"pp1", "pp4", "dgx4", "pp3"}) {
+                digest.add(session, LocalSmtpServer.alert(session, "ALERT: " + host + " storage above threshold",
+                        "oncall@example.com", "ops@example.com"));
+            }
+            // Same people, listed in another order: still the same audience.
+            digest.add(session, LocalSmtpServer.alert(session, "ALERT: pp7 old files", "ops@example.com", "oncall@example.com"));
+            digest.add(session, LocalSmtpServer.alert(session, "ALERT: qd4 old files", "oncall@example.com"));
+            Assert.assertEquals(smtp.getMessages().size(), 0);
+
+            digest.flush();
+            Assert.assertTrue(outbox.awaitIdle(5000));
+            Assert.assertEquals(smtp.getMessages().size(), 2);
+            String merged = smtp.getMessages().stream().filter(m -> m.contains("digest of 5 alerts")).findFirst().orElse("");
+            for (String host : new String[] {"pp1", "pp4", "dgx4", "pp3", "pp7"}) {
+                Assert.assertTrue(merged.contains("ALERT: " + host), host + " missing from digest");
+            }
+            // HTML alert bodies are merged as HTML, not escaped as text.
+            String body = (String) new MimeMessage(session, new ByteArrayInputStream(merged.getBytes(StandardCharsets.UTF_8))).getContent();
+            Assert.assertTrue(body.contains("<p>This is an automated alert: ALERT: pp1"), "pp1 body not merged as HTML");
+            Assert.assertFalse(body.contains("&lt;p&gt;"), "alert body was escaped");
+            Assert.assertEquals(digest.getAlerts(), 6);
+            Assert.assertEquals(digest.getMessages(), 2);
+        }
+    }
+
+    @Test
+    public void testWindowExpires() throws Exception {
+        try (LocalSmtpServer smtp = new LocalSmtpServer();
+             AlertOutbox outbox = new AlertOutbox(16, 1, 3, 10, 100, AlertOutbox.Overflow.DROP_NEWEST);
+             AlertDigest digest = new AlertDigest(200, 50, outbox)) {
+            Session session = smtp.session("digest@example.com");
+            digest.add(session, LocalSmtpServer.alert(session, "ALERT: pp1", "oncall@example.com"));
+            digest.add(session, LocalSmtpServer.alert(session, "ALERT: pp4", "oncall@example.com"));
+            for (int i = 0; i < 50 && smtp.getMessages().isEmpty(); i++) {
+                Thread.sleep(100);
+            }
+            Assert.assertEquals(smtp.getMessages().size(), 1);
+        }
+    }
+}
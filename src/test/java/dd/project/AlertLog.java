@@ -0,0 +1,481 @@
+package dd.project;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Write-ahead log for alert mail, so an alert found by a check survives the JVM dying
+ * before SMTP accepted it and is sent by the next run instead.
+ *
+ * Alerts are appended as raw MIME to segment files ({@code %020d.wal}, named after the
+ * first sequence number they hold) and fsynced before {@link #append} returns; callers
+ * appending at the same time share one fsync. {@link #deliverPending} streams unsent
+ * alerts from disk in order, sends them through MailDispatcher and appends an ACK
+ * record for each. Delivery is at least once: a crash between sending and the ACK
+ * sends that alert again, with the same Message-ID derived from its idempotency key so
+ * mail clients can tell it is a duplicate. Segments whose alerts are all acknowledged
+ * are deleted. Only the keys of pending alerts are kept in memory.
+ *
+ * Checks running in separate JVMs may share the directory: every operation holds an
+ * exclusive lock on its {@code lock} file and replays the log first if another process
+ * wrote to it since, and a delivery holds the lock until it is done, so an alert is not
+ * sent by two processes at once.
+ *
+ * <pre>
+ * record: int length | int crc32 | byte type | long seq | payload
+ * ALERT payload: int keyLength | key (UTF-8) | MIME message
+ * ACK: every alert up to seq was delivered (also written at the start of each segment)
+ * </pre>
+ */
+public final class AlertLog implements AutoCloseable {
+
+    private static final byte ALERT = 1;
+    private static final byte ACK = 2;
+    private static final int RECORD_HEADER = 4 + 4 + 1 + 8;
+    private static final int MAX_RECORD = 64 << 20;
+    private static final String SUFFIX = ".wal";
+    private static final String LOCK_FILE = "lock";
+
+    private static final AlertLog SHARED = new AlertLog(
+            Paths.get(System.getProperty("alert.log.dir",
+                    System.getProperty("storage.state.dir", System.getProperty("user.home") + "/.dd-storage") + "/alert-log")),
+            Long.getLong("alert.log.segment.bytes", 1L << 20));
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(SHARED::close, "alert-log-shutdown"));
+    }
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final Object syncLock = new Object();
+    private final Object deliverLock = new Object();
+
+    // Guarded by this.
+    private boolean opened;
+    private FileChannel active;
+    private Path activePath;
+    private long activeSize;
+    private long nextSeq = 1;
+    private long ackedThrough;
+    private long written;
+    // Idempotency key -> seq of every unacknowledged alert, in seq order.
+    private final Map<String, Long> pending = new LinkedHashMap<>();
+    // Open while some thread of this process holds the directory lock.
+    private FileChannel lockChannel;
+    private int lockHolders;
+
+    // Guarded by syncLock.
+    private long synced;
+
+    public AlertLog(Path directory, long segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    public static AlertLog shared() {
+        return SHARED;
+    }
+
+    /**
+     * Durably queues {@code message} under {@code key}. Returns false without writing if an
+     * alert with the same key is still pending, so a retried check does not queue twice.
+     */
+    public boolean append(String key, MimeMessage message) throws IOException, MessagingException {
+        message.saveChanges();
+        message.setHeader("Message-ID", messageId(key));
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        raw.write(ByteBuffer.allocate(4).putInt(keyBytes.length).array());
+        raw.write(keyBytes);
+        message.writeTo(raw);
+        long end;
+        synchronized (this) {
+            lock();
+            try {
+                open();
+                if (pending.containsKey(key)) {
+                    return false;
+                }
+                if (activeSize >= segmentBytes) {
+                    roll();
+                }
+                long seq = nextSeq++;
+                end = write(ALERT, seq, raw.toByteArray());
+                pending.put(key, seq);
+            } finally {
+                unlock();
+            }
+        }
+        // The record is in the file for other processes already; only durability waits for this.
+        sync(end);
+        return true;
+    }
+
+    /**
+     * Sends pending alerts oldest first and returns how many went out. Stops at the
+     * first alert that fails for a reason other than rejected recipients, leaving it and
+     * everything after it for the next call; rejected alerts are acknowledged and reported
+     * rather than retried forever.
+     */
+    public int deliverPending(Session session) throws IOException {
+        synchronized (deliverLock) {
+            synchronized (this) {
+                lock();
+            }
+            try {
+                List<Path> segments;
+                synchronized (this) {
+                    open();
+                    if (pending.isEmpty()) {
+                        return 0;
+                    }
+                    segments = segments();
+                }
+                int delivered = 0;
+                Record record = new Record();
+                delivery:
+                for (Path segment : segments) {
+                    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+                        while (record.read(in)) {
+                            if (record.type != ALERT || record.seq <= getAckedThrough()) {
+                                continue;
+                            }
+                            try {
+                                MailDispatcher.forSession(session).send(record.message(session));
+                                delivered++;
+                            } catch (SendFailedException e) {
+                                System.out.println("🚨 Alert " + record.key() + " was rejected and is dropped from the alert log: "
+                                        + e.getMessage());
+                            } catch (MessagingException e) {
+                                System.out.println("⚠️ Alert delivery failed, " + getPending() + " alerts stay queued: " + e.getMessage());
+                                break delivery;
+                            }
+                            acknowledge(record.seq);
+                        }
+                    }
+                }
+                long end;
+                synchronized (this) {
+                    end = written;
+                }
+                sync(end);
+                compact();
+                return delivered;
+            } finally {
+                synchronized (this) {
+                    unlock();
+                }
+            }
+        }
+    }
+
+    /** Unacknowledged alerts, including those left by an earlier run. */
+    public synchronized int getPending() throws IOException {
+        lock();
+        try {
+            open();
+            return pending.size();
+        } finally {
+            unlock();
+        }
+    }
+
+    private synchronized long getAckedThrough() {
+        return ackedThrough;
+    }
+
+    private synchronized void acknowledge(long seq) throws IOException {
+        write(ACK, seq, new byte[0]);
+        ackedThrough = seq;
+        for (Iterator<Long> it = pending.values().iterator(); it.hasNext() && it.next() <= seq; ) {
+            it.remove();
+        }
+    }
+
+    // Group commit: whoever gets the lock forces everything written so far, and callers
+    // whose records that covered return without another fsync.
+    private void sync(long end) throws IOException {
+        synchronized (syncLock) {
+            while (synced < end) {
+                long target;
+                FileChannel channel;
+                synchronized (this) {
+                    target = written;
+                    channel = active;
+                }
+                if (channel == null) {
+                    return;
+                }
+                try {
+                    channel.force(false);
+                    synced = target;
+                } catch (ClosedChannelException e) {
+                    // Rolled over meanwhile; roll() forced the old segment, force the new one.
+                }
+            }
+        }
+    }
+
+    private long write(byte type, long seq, byte[] payload) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + payload.length);
+        record.putInt(1 + 8 + payload.length).putInt(0).put(type).putLong(seq).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 8, record.capacity() - 8);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            active.write(record);
+        }
+        activeSize += record.capacity();
+        written += record.capacity();
+        return written;
+    }
+
+    private void roll() throws IOException {
+        active.force(false);
+        active.close();
+        activePath = segmentPath(nextSeq);
+        active = FileChannel.open(activePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeSize = 0;
+        // Carries the acknowledgement point over, so older segments can be deleted.
+        write(ACK, ackedThrough, new byte[0]);
+    }
+
+    // Takes the directory lock for this process, or joins the thread already holding it.
+    // Called holding this.
+    private void lock() throws IOException {
+        if (lockHolders++ > 0) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            // Released when the channel is closed.
+            lockChannel.lock();
+            if (opened && changedElsewhere()) {
+                System.out.println("📧 Alert log " + directory + " was written by another process, replaying it");
+                reset();
+            }
+        } catch (IOException | RuntimeException e) {
+            lockHolders--;
+            if (lockChannel != null) {
+                lockChannel.close();
+                lockChannel = null;
+            }
+            throw e;
+        }
+    }
+
+    // Called holding this.
+    private void unlock() throws IOException {
+        if (--lockHolders == 0) {
+            lockChannel.close();
+            lockChannel = null;
+        }
+    }
+
+    // Everything this process writes goes to the end of the active segment, so any other
+    // writer either grew it or started a new one.
+    private boolean changedElsewhere() throws IOException {
+        List<Path> segments = segments();
+        return segments.isEmpty() || !segments.get(segments.size() - 1).equals(activePath) || Files.size(activePath) != activeSize;
+    }
+
+    private void reset() throws IOException {
+        active.close();
+        active = null;
+        activePath = null;
+        activeSize = 0;
+        nextSeq = 1;
+        ackedThrough = 0;
+        pending.clear();
+        opened = false;
+    }
+
+    /** Deletes segments whose alerts were all acknowledged; never the one being appended to. */
+    private synchronized void compact() throws IOException {
+        List<Path> segments = segments();
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstSeq(segments.get(i + 1)) - 1 <= ackedThrough) {
+                Files.delete(segments.get(i));
+            }
+        }
+    }
+
+    // Replays the log: finds the acknowledgement point, the pending keys and the next seq,
+    // and cuts a torn record off the end of the last segment.
+    private void open() throws IOException {
+        if (opened) {
+            return;
+        }
+        List<Path> segments = segments();
+        Record record = new Record();
+        long validBytes = 0;
+        for (Path segment : segments) {
+            nextSeq = Math.max(nextSeq, firstSeq(segment));
+            validBytes = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+                while (record.read(in)) {
+                    validBytes += 8 + record.length;
+                    if (record.type == ALERT) {
+                        pending.put(record.key(), record.seq);
+                        nextSeq = Math.max(nextSeq, record.seq + 1);
+                    } else {
+                        ackedThrough = Math.max(ackedThrough, record.seq);
+                    }
+                }
+            }
+        }
+        pending.values().removeIf(seq -> seq <= ackedThrough);
+        nextSeq = Math.max(nextSeq, ackedThrough + 1);
+        if (segments.isEmpty()) {
+            activePath = segmentPath(nextSeq);
+            active = FileChannel.open(activePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            if (Files.size(last) > validBytes) {
+                System.out.println("⚠️ Dropping a torn record at the end of " + last);
+                try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+                    channel.truncate(validBytes);
+                }
+            }
+            activePath = last;
+            active = FileChannel.open(last, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        activeSize = active.size();
+        opened = true;
+        if (!pending.isEmpty()) {
+            System.out.println("📧 Alert log " + directory + " has " + pending.size() + " undelivered alerts");
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).forEach(segments::add);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private Path segmentPath(long firstSeq) {
+        return directory.resolve(String.format("%020d%s", firstSeq, SUFFIX));
+    }
+
+    private static long firstSeq(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static String messageId(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder id = new StringBuilder("<");
+            for (int i = 0; i < 16; i++) {
+                id.append(String.format("%02x", hash[i]));
+            }
+            return id.append("@alert-log.dd-storage>").toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required of every JRE", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (active != null) {
+            try {
+                active.force(false);
+                active.close();
+            } catch (IOException e) {
+                System.out.println("⚠️ Could not close alert log " + directory + ": " + e.getMessage());
+            }
+            active = null;
+            activePath = null;
+            opened = false;
+            pending.clear();
+        }
+    }
+
+    /** The record last read, with its payload buffer reused from one record to the next. */
+    private static final class Record {
+        int length;
+        byte type;
+        long seq;
+        byte[] payload = new byte[4096];
+        int payloadLength;
+
+        /** False at the end of the segment or at a torn or corrupt record. */
+        boolean read(DataInputStream in) throws IOException {
+            try {
+                length = in.readInt();
+                if (length < 9 || length > MAX_RECORD) {
+                    return false;
+                }
+                int crc = in.readInt();
+                type = in.readByte();
+                seq = in.readLong();
+                payloadLength = length - 9;
+                if (payload.length < payloadLength) {
+                    payload = new byte[Math.max(payloadLength, payload.length * 2)];
+                }
+                in.readFully(payload, 0, payloadLength);
+                CRC32 check = new CRC32();
+                check.update(type);
+                check.update(ByteBuffer.allocate(8).putLong(seq).array());
+                check.update(payload, 0, payloadLength);
+                return (int) check.getValue() == crc && (type == ALERT || type == ACK);
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        String key() {
+            int keyLength = ByteBuffer.wrap(payload, 0, 4).getInt();
+            return new String(payload, 4, keyLength, StandardCharsets.UTF_8);
+        }
+
+        MimeMessage message(Session session) throws MessagingException {
+            int keyLength = ByteBuffer.wrap(payload, 0, 4).getInt();
+            return new LoggedMessage(session, new ByteArrayInputStream(payload, 4 + keyLength, payloadLength - 4 - keyLength));
+        }
+    }
+
+    // Keeps the Message-ID stored in the log instead of minting a new one on every attempt.
+    private static final class LoggedMessage extends MimeMessage {
+        LoggedMessage(Session session, InputStream in) throws MessagingException {
+            super(session, in);
+        }
+
+        @Override
+        protected void updateMessageID() {
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package dd.project;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import javax.mail.Session;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Queues alerts in an AlertLog, reopens it as a restarted JVM would, and delivers the
+ * backlog to a LocalSmtpServer. Two logs on one directory stand in for two processes.
+ */
+public class AlertLogCheck {
+
+    @Test
+    public void testBacklogSurvivesRestartAndIsCompacted() throws Exception {
+        Path directory = Files.createTempDirectory("alert-log");
+        try (LocalSmtpServer smtp = new LocalSmtpServer()) {
+            Session session = smtp.session("wal@example.com");
+            try (AlertLog log = new AlertLog(directory, 64 * 1024)) {
+                for (int i = 0; i < 2000; i++) {
+                    Assert.assertTrue(log.append("old-files/node-" + i, LocalSmtpServer.alert(session, "ALERT: node-" + i)));
+                }
+                Assert.assertFalse(log.append("old-files/node-7", LocalSmtpServer.alert(session, "ALERT: node-7 again")));
+            }
+            Assert.assertTrue(segments(directory) > 1);
+
+            try (AlertLog log = new AlertLog(directory, 64 * 1024)) {
+                Assert.assertEquals(log.getPending(), 2000);
+                Assert.assertEquals(log.deliverPending(session), 2000);
+                Assert.assertEquals(log.getPending(), 0);
+            }
+            Assert.assertEquals(smtp.getMessages().size(), 2000);
+            Assert.assertEquals(segments(directory), 1);
+
+            try (AlertLog log = new AlertLog(directory, 64 * 1024)) {
+                Assert.assertEquals(log.getPending(), 0);
+                Assert.assertEquals(log.deliverPending(session), 0);
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testFailedDeliveryStaysQueuedWithSameMessageId() throws Exception {
+        Path directory = Files.createTempDirectory("alert-log");
+        try (AlertLog log = new AlertLog(directory, 64 * 1024)) {
+            LocalSmtpServer down = new LocalSmtpServer();
+            Session unreachable = down.session("wal@example.com");
+            down.close();
+            log.append("old-files/pp5", LocalSmtpServer.alert(unreachable, "ALERT: pp5"));
+            Assert.assertEquals(log.deliverPending(unreachable), 0);
+            Assert.assertEquals(log.getPending(), 1);
+
+            try (LocalSmtpServer smtp = new LocalSmtpServer()) {
+                Assert.assertEquals(log.deliverPending(smtp.session("wal@example.com")), 1);
+                Assert.assertTrue(smtp.getMessages().get(0).contains("@alert-log.dd-storage>"));
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testLogsSharingADirectorySeeEachOthersWrites() throws Exception {
+        Path directory = Files.createTempDirectory("alert-log");
+        try (LocalSmtpServer smtp = new LocalSmtpServer();
+                AlertLog pp5 = new AlertLog(directory, 64 * 1024);
+                AlertLog pp7 = new AlertLog(directory, 64 * 1024)) {
+            Session session = smtp.session("wal@example.com");
+            Assert.assertTrue(pp5.append("old-files/storage", LocalSmtpServer.alert(session, "ALERT: storage")));
+            Assert.assertFalse(pp7.append("old-files/storage", LocalSmtpServer.alert(session, "ALERT: storage again")));
+            Assert.assertTrue(pp7.append("old-files/pp7", LocalSmtpServer.alert(session, "ALERT: pp7")));
+
+            Assert.assertEquals(pp5.getPending(), 2);
+            Assert.assertEquals(pp5.deliverPending(session), 2);
+            Assert.assertEquals(pp7.getPending(), 0);
+            Assert.assertEquals(pp7.deliverPending(session), 0);
+            Assert.assertEquals(smtp.getMessages().size(), 2);
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static long segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".wal")).count();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package dd.project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue of pending alert deliveries worked off by background threads, so a
+ * probe hands its alert over and carries on timing the next check while SMTP is slow.
+ *
+ * A failed delivery is retried after an exponential, jittered backoff
+ * ({@code alert.outbox.backoff.ms} doubling up to {@code alert.outbox.backoff.max.ms})
+ * until {@code alert.outbox.max.attempts}. When {@code alert.outbox.capacity} alerts are
+ * already waiting, {@code alert.outbox.overflow} decides which one is dropped:
+ * DROP_NEWEST keeps the alerts that opened an incident, DROP_OLDEST keeps the latest.
+ * {@link #close()} stops intake and waits up to {@code alert.outbox.drain.ms} for what
+ * is queued or backing off; the shared outbox does this from a shutdown hook.
+ */
+public final class AlertOutbox implements AutoCloseable {
+
+    public enum Overflow {
+        DROP_NEWEST,
+        DROP_OLDEST
+    }
+
+    /** Sends one alert; throwing makes the outbox retry it. */
+    public interface Delivery {
+        void deliver() throws Exception;
+    }
+
+    private static final long DRAIN_TIMEOUT_MS = Long.getLong("alert.outbox.drain.ms", 30000L);
+
+    private static final AlertOutbox SHARED = new AlertOutbox(
+            Integer.getInteger("alert.outbox.capacity", 256),
+            Integer.getInteger("alert.outbox.workers", 2),
+            Integer.getInteger("alert.outbox.max.attempts", 5),
+            Long.getLong("alert.outbox.backoff.ms", 2000L),
+            Long.getLong("alert.outbox.backoff.max.ms", 60000L),
+            Overflow.valueOf(System.getProperty("alert.outbox.overflow", Overflow.DROP_NEWEST.name())));
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(SHARED::close, "alert-outbox-shutdown"));
+    }
+
+    private final BlockingQueue<Alert> queue;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final Overflow overflow;
+    private final List<Thread> workers = new ArrayList<>();
+    private final ScheduledExecutorService retries;
+    private volatile boolean closed;
+
+    // Queued, being delivered or waiting out a backoff; guarded by this.
+    private int pending;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+    private final AtomicLong deliveryNanos = new AtomicLong();
+
+    public AlertOutbox(int capacity, int workerCount, int maxAttempts, long backoffMillis, long maxBackoffMillis,
+            Overflow overflow) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.overflow = overflow;
+        retries = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "alert-outbox-retry");
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "alert-outbox-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    public static AlertOutbox shared() {
+        return SHARED;
+    }
+
+    /**
+     * Queues {@code delivery} without waiting for it. Returns false if it was dropped,
+     * either because the outbox is closed or full under DROP_NEWEST.
+     */
+    public boolean submit(String description, Delivery delivery) {
+        if (closed) {
+            System.out.println("⚠️ Alert outbox is closed, dropping: " + description);
+            dropped.incrementAndGet();
+            return false;
+        }
+        submitted.incrementAndGet();
+        synchronized (this) {
+            pending++;
+        }
+        return enqueue(new Alert(description, delivery));
+    }
+
+    private boolean enqueue(Alert alert) {
+        while (!queue.offer(alert)) {
+            Alert victim = overflow == Overflow.DROP_OLDEST ? queue.poll() : alert;
+            if (victim == null) {
+                continue;
+            }
+            System.out.println("⚠️ Alert outbox full (" + queue.size() + " waiting), dropping: " + victim.description);
+            dropped.incrementAndGet();
+            finished();
+            if (victim == alert) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void work() {
+        while (true) {
+            Alert alert;
+            try {
+                alert = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            alert.attempts++;
+            long start = System.nanoTime();
+            try {
+                alert.delivery.deliver();
+                deliveryNanos.addAndGet(System.nanoTime() - start);
+                delivered.incrementAndGet();
+                finished();
+            } catch (Exception e) {
+                if (alert.attempts >= maxAttempts) {
+                    System.out.println("🚨 Giving up on alert after " + alert.attempts + " attempts: " + alert.description
+                            + " (" + e.getMessage() + ")");
+                    abandoned.incrementAndGet();
+                    finished();
+                } else {
+                    long delay = backoff(alert.attempts);
+                    System.out.println("⚠️ Alert delivery failed (attempt " + alert.attempts + "/" + maxAttempts + "), retrying in "
+                            + delay + "ms: " + alert.description + " (" + e.getMessage() + ")");
+                    retried.incrementAndGet();
+                    retries.schedule(() -> enqueue(alert), delay, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    // Random point in the upper half of the doubled delay, so alerts that failed together do not retry together.
+    private long backoff(int attempts) {
+        long ceiling = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempts - 1, 30));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    private synchronized void finished() {
+        pending--;
+        notifyAll();
+    }
+
+    /** Alerts queued, being delivered or waiting to be retried. */
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    /**
+     * Waits until nothing is pending or {@code timeoutMillis} passed; returns whether
+     * everything was delivered or given up on.
+     */
+    public synchronized boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (long left = timeoutMillis; pending > 0 && left > 0; left = deadline - System.currentTimeMillis()) {
+            wait(left);
+        }
+        return pending == 0;
+    }
+
+    /** Stops taking alerts and drains what is pending for up to {@code alert.outbox.drain.ms}. */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (!awaitIdle(DRAIN_TIMEOUT_MS)) {
+                System.out.println("⚠️ Alert outbox closed with " + getPending() + " alerts undelivered");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        retries.shutdownNow();
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    public long getRetried() {
+        return retried.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getAbandoned() {
+        return abandoned.get();
+    }
+
+    public String stats() {
+        long count = delivered.get();
+        return String.format("submitted=%d delivered=%d retried=%d dropped=%d abandoned=%d pending=%d avgDelivery=%.1fms",
+                submitted.get(), count, retried.get(), dropped.get(), abandoned.get(), getPending(),
+                count == 0 ? 0 : deliveryNanos.get() / 1e6 / count);
+    }
+
+    private static final class Alert {
+        final String description;
+        final Delivery delivery;
+        int attempts;
+
+        Alert(String description, Delivery delivery) {
+            this.description = description;
+            this.delivery = delivery;
+        }
+    }
+}
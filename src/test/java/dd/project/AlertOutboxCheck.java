@@ -0,0 +1,57 @@
+package dd.project;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that AlertOutbox hands alerts off without blocking, retries failures, drops
+ * on overflow and drains on close.
+ */
+public class AlertOutboxCheck {
+
+    @Test
+    public void testRetriesUntilDelivered() throws Exception {
+        try (AlertOutbox outbox = new AlertOutbox(8, 1, 5, 10, 100, AlertOutbox.Overflow.DROP_NEWEST)) {
+            AtomicInteger attempts = new AtomicInteger();
+            outbox.submit("flaky", () -> {
+                if (attempts.incrementAndGet() < 3) {
+                    throw new IllegalStateException("SMTP unavailable");
+                }
+            });
+            Assert.assertTrue(outbox.awaitIdle(5000));
+            Assert.assertEquals(attempts.get(), 3);
+            Assert.assertEquals(outbox.getDelivered(), 1);
+            Assert.assertEquals(outbox.getRetried(), 2);
+        }
+    }
+
+    @Test
+    public void testSubmitDoesNotWaitAndOverflowDrops() throws Exception {
+        CountDownLatch smtp = new CountDownLatch(1);
+        AlertOutbox.Delivery slow = smtp::await;
+        AlertOutbox outbox = new AlertOutbox(2, 1, 1, 10, 100, AlertOutbox.Overflow.DROP_NEWEST);
+        int accepted = 0;
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                if (outbox.submit("alert " + i, slow)) {
+                    accepted++;
+                }
+            }
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+            // One being delivered and two waiting, at most.
+            Assert.assertTrue(accepted <= 3, "accepted " + accepted);
+            Assert.assertEquals(outbox.getDropped(), 10 - accepted);
+        } finally {
+            smtp.countDown();
+            outbox.close();
+        }
+        // close() drained what was accepted.
+        Assert.assertEquals(outbox.getDelivered(), accepted);
+        Assert.assertEquals(outbox.getPending(), 0);
+    }
+}
@@ -0,0 +1,244 @@
+package dd.project;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether a failing check should notify, so each distinct condition (a rule
+ * plus what it is about, e.g. "old-files" on pp5's postImageProcessor) mails once
+ * instead of on every run while it lasts.
+ *
+ * A condition opens after {@code openAfter} consecutive failures and notifies then; while
+ * open it notifies again only once the rule's TTL has passed since the last notification.
+ * It closes after {@code closeAfter} consecutive successes, so a flapping service does not
+ * mail on every flap. State lives in {@code <storage.state.dir>/alert-suppression.tsv}
+ * and is re-read under a file lock on every update, so separate test JVMs share it.
+ */
+public final class AlertSuppressor {
+
+    public enum Decision {
+        /** The condition opened or its TTL ran out: send the alert. */
+        NOTIFY,
+        /** Already notified, not yet confirmed, or nothing wrong. */
+        SUPPRESS,
+        /** An open condition closed. */
+        RESOLVED;
+
+        public boolean shouldNotify() {
+            return this == NOTIFY;
+        }
+    }
+
+    /** How long a notification holds and how much evidence opens or closes a condition. */
+    public static final class Rule {
+        private final String name;
+        private final long ttlMillis;
+        private final int openAfter;
+        private final int closeAfter;
+
+        public Rule(String name, long ttlMillis, int openAfter, int closeAfter) {
+            this.name = name;
+            this.ttlMillis = ttlMillis;
+            this.openAfter = Math.max(1, openAfter);
+            this.closeAfter = Math.max(1, closeAfter);
+        }
+
+        /**
+         * A rule whose defaults can be overridden with {@code alert.rule.<name>.ttl.hours},
+         * {@code alert.rule.<name>.open.after} and {@code alert.rule.<name>.close.after}.
+         */
+        public static Rule of(String name, long ttlHours, int openAfter, int closeAfter) {
+            String prefix = "alert.rule." + name + ".";
+            return new Rule(name, TimeUnit.HOURS.toMillis(Long.getLong(prefix + "ttl.hours", ttlHours)),
+                    Integer.getInteger(prefix + "open.after", openAfter), Integer.getInteger(prefix + "close.after", closeAfter));
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /** Old files under a scanned directory; re-mailed once a day while they stay. */
+    public static final Rule OLD_FILES = Rule.of("old-files", 24, 1, 1);
+
+    /** A health-checked endpoint failing; two probes either way before it opens or closes. */
+    public static final Rule ENDPOINT_DOWN = Rule.of("endpoint-down", 6, 2, 2);
+
+    // Conditions not seen for this long are forgotten, so renamed hosts do not pile up.
+    private static final long FORGET_MS = TimeUnit.DAYS.toMillis(Long.getLong("alert.suppression.forget.days", 30L));
+
+    private static final AlertSuppressor SHARED = new AlertSuppressor(Paths.get(System.getProperty("alert.suppression.file",
+            System.getProperty("storage.state.dir", System.getProperty("user.home") + "/.dd-storage") + "/alert-suppression.tsv")));
+
+    private final Path file;
+
+    public AlertSuppressor(Path file) {
+        this.file = file;
+    }
+
+    public static AlertSuppressor shared() {
+        return SHARED;
+    }
+
+    /** Records a failed check of {@code subject} under {@code rule}. */
+    public Decision failure(Rule rule, String subject) {
+        return update(rule, subject, true, System.currentTimeMillis());
+    }
+
+    /** Records a passed check of {@code subject} under {@code rule}. */
+    public Decision success(Rule rule, String subject) {
+        return update(rule, subject, false, System.currentTimeMillis());
+    }
+
+    /** Collects the probes of one run for {@code rule}; see {@link Run}. */
+    public Run run(Rule rule) {
+        return new Run(this, rule);
+    }
+
+    synchronized Decision update(Rule rule, String subject, boolean failed, long now) {
+        String fingerprint = rule.name + " " + subject.replaceAll("[\t\r\n]", " ");
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (FileChannel lockChannel = FileChannel.open(file.resolveSibling(file.getFileName() + ".lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // Released when the channel is closed.
+                lockChannel.lock();
+                Map<String, Condition> conditions = load(now);
+                Condition condition = conditions.computeIfAbsent(fingerprint, f -> new Condition());
+                Decision decision = failed ? condition.failed(rule, now) : condition.passed(rule);
+                condition.seenAt = now;
+                if (!condition.open && condition.failures == 0) {
+                    conditions.remove(fingerprint);
+                }
+                save(conditions);
+                return decision;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Better a repeated alert than a lost one.
+            System.out.println("⚠️ Alert suppression state " + file + " unusable, not suppressing: " + e.getMessage());
+            return failed ? Decision.NOTIFY : Decision.SUPPRESS;
+        }
+    }
+
+    /**
+     * The probes of one run, recorded once per subject when the run ends. A check that
+     * probes the same endpoint from several tests would otherwise count every probe as a
+     * run, so one bad run could open a condition meant to need two. A subject counts as
+     * failed if any of its probes failed.
+     */
+    public static final class Run {
+        private final AlertSuppressor suppressor;
+        private final Rule rule;
+        // Subject -> whether every probe of it passed, in the order first probed.
+        private final Map<String, Boolean> outcomes = new LinkedHashMap<>();
+
+        Run(AlertSuppressor suppressor, Rule rule) {
+            this.suppressor = suppressor;
+            this.rule = rule;
+        }
+
+        public synchronized void passed(String subject) {
+            outcomes.putIfAbsent(subject, true);
+        }
+
+        public synchronized void failed(String subject) {
+            outcomes.put(subject, false);
+        }
+
+        /** Records each subject probed since the last call once and returns its decision. */
+        public Map<String, Decision> finish() {
+            return finish(System.currentTimeMillis());
+        }
+
+        synchronized Map<String, Decision> finish(long now) {
+            Map<String, Decision> decisions = new LinkedHashMap<>();
+            for (Map.Entry<String, Boolean> outcome : outcomes.entrySet()) {
+                decisions.put(outcome.getKey(), suppressor.update(rule, outcome.getKey(), !outcome.getValue(), now));
+            }
+            outcomes.clear();
+            return decisions;
+        }
+    }
+
+    private Map<String, Condition> load(long now) throws IOException {
+        Map<String, Condition> conditions = new LinkedHashMap<>();
+        if (!Files.exists(file)) {
+            return conditions;
+        }
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] fields = line.split("\t", 6);
+            if (fields.length != 6) {
+                continue;
+            }
+            Condition condition = new Condition();
+            condition.open = fields[0].equals("open");
+            condition.failures = Integer.parseInt(fields[1]);
+            condition.successes = Integer.parseInt(fields[2]);
+            condition.notifiedAt = Long.parseLong(fields[3]);
+            condition.seenAt = Long.parseLong(fields[4]);
+            if (now - condition.seenAt < FORGET_MS) {
+                conditions.put(fields[5], condition);
+            }
+        }
+        return conditions;
+    }
+
+    private void save(Map<String, Condition> conditions) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Condition> entry : conditions.entrySet()) {
+            Condition c = entry.getValue();
+            lines.add((c.open ? "open" : "closed") + "\t" + c.failures + "\t" + c.successes + "\t" + c.notifiedAt + "\t"
+                    + c.seenAt + "\t" + entry.getKey());
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static final class Condition {
+        boolean open;
+        int failures;
+        int successes;
+        long notifiedAt;
+        long seenAt;
+
+        Decision failed(Rule rule, long now) {
+            successes = 0;
+            failures++;
+            if (!open) {
+                if (failures < rule.openAfter) {
+                    return Decision.SUPPRESS;
+                }
+                open = true;
+            } else if (now - notifiedAt < rule.ttlMillis) {
+                return Decision.SUPPRESS;
+            }
+            notifiedAt = now;
+            return Decision.NOTIFY;
+        }
+
+        Decision passed(Rule rule) {
+            failures = 0;
+            if (!open) {
+                return Decision.SUPPRESS;
+            }
+            if (++successes < rule.closeAfter) {
+                return Decision.SUPPRESS;
+            }
+            open = false;
+            successes = 0;
+            return Decision.RESOLVED;
+        }
+    }
+}
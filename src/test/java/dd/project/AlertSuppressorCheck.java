@@ -0,0 +1,81 @@
+package dd.project;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Walks an endpoint through an outage, a flap and a recovery, reopening the suppression
+ * state between checks as separate runs would, and probes it repeatedly within one run.
+ */
+public class AlertSuppressorCheck {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void testOneNotificationPerOutage() throws Exception {
+        Path directory = Files.createTempDirectory("suppression");
+        Path file = directory.resolve("alert-suppression.tsv");
+        AlertSuppressor.Rule rule = new AlertSuppressor.Rule("endpoint-down", 6 * HOUR, 2, 2);
+        long t = 1_700_000_000_000L;
+        try {
+            Assert.assertEquals(new AlertSuppressor(file).update(rule, "apollo2", true, t), AlertSuppressor.Decision.SUPPRESS);
+            Assert.assertEquals(new AlertSuppressor(file).update(rule, "apollo2", true, t + 1), AlertSuppressor.Decision.NOTIFY);
+            Assert.assertEquals(new AlertSuppressor(file).update(rule, "apollo2", true, t + 2), AlertSuppressor.Decision.SUPPRESS);
+            // A single good probe is a flap, not a recovery.
+            Assert.assertEquals(new AlertSuppressor(file).update(rule, "apollo2", false, t + 3), AlertSuppressor.Decision.SUPPRESS);
+            Assert.assertEquals(new AlertSuppressor(file).update(rule, "apollo2", true, t + 4), AlertSuppressor.Decision.SUPPRESS);
+            // Still down after the TTL: remind once.
+            Assert.assertEquals(new AlertSuppressor(file).update(rule, "apollo2", true, t + 7 * HOUR), AlertSuppressor.Decision.NOTIFY);
+            Assert.assertEquals(new AlertSuppressor(file).update(rule, "other", true, t + 7 * HOUR), AlertSuppressor.Decision.SUPPRESS);
+
+            Assert.assertEquals(new AlertSuppressor(file).update(rule, "apollo2", false, t + 8 * HOUR), AlertSuppressor.Decision.SUPPRESS);
+            Assert.assertEquals(new AlertSuppressor(file).update(rule, "apollo2", false, t + 9 * HOUR), AlertSuppressor.Decision.RESOLVED);
+            Assert.assertEquals(Files.readAllLines(file).size(), 1, "only the unconfirmed 'other' condition is kept");
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory.resolve("alert-suppression.tsv.lock"));
+            Files.delete(directory);
+        }
+    }
+    @Test
+    public void testRepeatedProbesWithinOneRunCountOnce() throws Exception {
+        Path directory = Files.createTempDirectory("suppression");
+        Path file = directory.resolve("alert-suppression.tsv");
+        AlertSuppressor.Rule rule = new AlertSuppressor.Rule("endpoint-down", 6 * HOUR, 2, 2);
+        long t = 1_700_000_000_000L;
+        try {
+            // The smoke test, testResponseTimes and the data-provider test all probe the same API.
+            AlertSuppressor.Run run = new AlertSuppressor(file).run(rule);
+            run.failed("recommendation API");
+            run.failed("recommendation API");
+            run.passed("recommendation API");
+            run.passed("websocket");
+            Map<String, AlertSuppressor.Decision> first = run.finish(t);
+            Assert.assertEquals(first.get("recommendation API"), AlertSuppressor.Decision.SUPPRESS, "one bad run is not an outage");
+            Assert.assertEquals(first.get("websocket"), AlertSuppressor.Decision.SUPPRESS);
+
+            run = new AlertSuppressor(file).run(rule);
+            run.failed("recommendation API");
+            Assert.assertEquals(run.finish(t + HOUR).get("recommendation API"), AlertSuppressor.Decision.NOTIFY);
+
+            run = new AlertSuppressor(file).run(rule);
+            for (int i = 0; i < 3; i++) {
+                run.passed("recommendation API");
+            }
+            Assert.assertEquals(run.finish(t + 2 * HOUR).get("recommendation API"), AlertSuppressor.Decision.SUPPRESS,
+                    "one good run is a flap, not a recovery");
+            run.passed("recommendation API");
+            Assert.assertEquals(run.finish(t + 3 * HOUR).get("recommendation API"), AlertSuppressor.Decision.RESOLVED);
+            Assert.assertTrue(run.finish(t + 4 * HOUR).isEmpty(), "finish starts a new run");
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory.resolve("alert-suppression.tsv.lock"));
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package dd.project;
+
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Coalesces identical commands to the same host: probes that run the same df on the
+ * same machine within {@code ssh.cache.ttl.ms} share one remote execution, even when
+ * they log in as different users. Only successful results are kept. Commands given a stdout sink bypass the cache: their
+ * output (typically a find listing) is streamed, never held in memory or re-served stale.
+ */
+public final class CachingSshTransport implements SshTransport {
+
+    private final SshTransport delegate;
+    private final SingleFlightCache<String, CommandResult> cache;
+
+    public CachingSshTransport(SshTransport delegate, long ttlMillis) {
+        this.delegate = delegate;
+        this.cache = new SingleFlightCache<>(ttlMillis, CommandResult::isSuccess);
+    }
+
+    @Override
+    public CompletableFuture<CommandResult> executeAsync(SshTarget target, String command, OutputStream stdoutSink, long timeoutMillis) {
+        if (stdoutSink != null) {
+            return delegate.executeAsync(target, command, stdoutSink, timeoutMillis);
+        }
+        return cache.get(target.hostKey() + "\n" + command, () -> delegate.executeAsync(target, command, null, timeoutMillis));
+    }
+
+    public SshTransport getDelegate() {
+        return delegate;
+    }
+
+    public SingleFlightCache<String, CommandResult> getCache() {
+        return cache;
+    }
+
+    @Override
+    public String name() {
+        return delegate.name() + "+cache";
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,129 @@
+package dd.project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Runs identical commands through CachingSshTransport over a slow in-memory transport and
+ * checks how many reach it and what the cache counters credit.
+ */
+public class CachingSshTransportCheck {
+
+    private static final SshTarget HOST = new SshTarget("appUser", "pp1", 22, "secret");
+
+    @Test
+    public void testConcurrentCallsShareOneExecution() throws Exception {
+        SlowTransport slow = new SlowTransport(200);
+        CachingSshTransport caching = new CachingSshTransport(slow, 60000);
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<CommandResult>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return caching.execute(HOST, StorageSnapshot.DF_COMMAND + " /mnt/local");
+                }));
+            }
+            start.countDown();
+            for (Future<CommandResult> result : results) {
+                Assert.assertEquals(result.get(10, TimeUnit.SECONDS).getStdout(), "run 1\n");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        Assert.assertEquals(slow.runs.get(), 1);
+        SingleFlightCache<String, CommandResult> cache = caching.getCache();
+        Assert.assertEquals(cache.getMisses(), 1);
+        Assert.assertEquals(cache.getJoins(), callers - 1);
+
+        long savedBefore = cache.getSavedMillis();
+        Assert.assertEquals(caching.execute(HOST, StorageSnapshot.DF_COMMAND + " /mnt/local").getStdout(), "run 1\n");
+        Assert.assertEquals(slow.runs.get(), 1);
+        Assert.assertEquals(cache.getHits(), 1);
+        Assert.assertTrue(cache.getSavedMillis() - savedBefore >= 150, "a hit is credited with the execution's latency");
+        Assert.assertEquals(cache.getHitRatio(), (double) callers / (callers + 1), 1e-9);
+    }
+
+    @Test
+    public void testStreamedCommandsBypassTheCache() throws Exception {
+        SlowTransport slow = new SlowTransport(0);
+        CachingSshTransport caching = new CachingSshTransport(slow, 60000);
+        for (int i = 1; i <= 2; i++) {
+            ByteArrayOutputStream sink = new ByteArrayOutputStream();
+            caching.execute(HOST, "find /mnt/local -printf '%P\\0'", sink);
+            Assert.assertEquals(new String(sink.toByteArray(), StandardCharsets.UTF_8), "run " + i + "\n");
+        }
+        Assert.assertEquals(slow.runs.get(), 2);
+        Assert.assertEquals(caching.getCache().getMisses(), 0);
+    }
+
+    @Test
+    public void testUsersOfOneHostShareOneExecution() throws Exception {
+        SlowTransport slow = new SlowTransport(0);
+        CachingSshTransport caching = new CachingSshTransport(slow, 60000);
+        String df = StorageSnapshot.DF_COMMAND + " /mnt/local/nvmestorage";
+        // pp1storage logs in to dgx4 as hbp, dgx4storgae as appUser.
+        Assert.assertEquals(caching.execute(new SshTarget("hbp", "dgx4", 22, "secret"), df).getStdout(), "run 1\n");
+        Assert.assertEquals(caching.execute(new SshTarget("appUser", "dgx4", 22, "other"), df).getStdout(), "run 1\n");
+        Assert.assertEquals(caching.execute(new SshTarget("appUser", "dgx4", 2222, "other"), df).getStdout(), "run 2\n");
+        Assert.assertEquals(slow.runs.get(), 2);
+
+        // The df cache of the storage probes, which stream df into a parser.
+        SlowTransport probed = new SlowTransport(0);
+        long misses = SshStorageProbe.getCapacityCache().getMisses();
+        new SshStorageProbe(new SshTarget("hbp", "cache-check", 22, "secret"), probed).capacity("/mnt/local/nvmestorage");
+        new SshStorageProbe(new SshTarget("appUser", "cache-check", 22, "other"), probed).capacity("/mnt/local/nvmestorage");
+        Assert.assertEquals(probed.runs.get(), 1);
+        Assert.assertEquals(SshStorageProbe.getCapacityCache().getMisses() - misses, 1);
+    }
+
+    /** Answers every command with "run N" after a fixed delay. */
+    private static final class SlowTransport implements SshTransport {
+        final AtomicInteger runs = new AtomicInteger();
+        private final long delayMillis;
+
+        SlowTransport(long delayMillis) {
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public CompletableFuture<CommandResult> executeAsync(SshTarget target, String command, OutputStream stdoutSink, long timeoutMillis) {
+            String stdout = "run " + runs.incrementAndGet() + "\n";
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    Thread.sleep(delayMillis);
+                    if (stdoutSink != null) {
+                        stdoutSink.write(stdout.getBytes(StandardCharsets.UTF_8));
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                return new CommandResult(command, stdoutSink == null ? stdout : "", "", 0, delayMillis, false);
+            });
+        }
+
+        @Override
+        public String name() {
+            return "slow";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package dd.project;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Growth rate and time-to-full per mount, from an exponentially weighted least-squares
+ * fit of used bytes against time. Each sample updates five decayed sums, so the cost
+ * per sample is constant and nothing is buffered; older samples fade with a half-life of
+ * {@code storage.forecast.half.life.hours} (default 24), so a volume that stops filling
+ * stops being forecast as filling within a day or two.
+ *
+ * A forecast is only reliable once it has seen at least three samples spanning
+ * {@code storage.forecast.min.span.hours} (default 6); callers fall back to the static
+ * use% threshold until then.
+ */
+public class CapacityForecaster {
+
+    public static final long DEFAULT_HALF_LIFE_MILLIS =
+            TimeUnit.HOURS.toMillis(Long.getLong("storage.forecast.half.life.hours", 24L));
+    public static final long MIN_SPAN_MILLIS = TimeUnit.HOURS.toMillis(Long.getLong("storage.forecast.min.span.hours", 6L));
+    public static final long LOOKBACK_MILLIS = TimeUnit.DAYS.toMillis(Long.getLong("storage.forecast.lookback.days", 14L));
+
+    private static final double MILLIS_PER_HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private final double tauHours;
+    private final Map<String, GrowthModel> models = new HashMap<>();
+
+    public CapacityForecaster() {
+        this(DEFAULT_HALF_LIFE_MILLIS);
+    }
+
+    public CapacityForecaster(long halfLifeMillis) {
+        this.tauHours = halfLifeMillis / MILLIS_PER_HOUR / Math.log(2);
+    }
+
+    /**
+     * Forecast for {@code current}'s mount from the shared usage history of the last
+     * {@code storage.forecast.lookback.days}, ending with {@code current} itself.
+     */
+    public static Forecast fromHistory(String host, StorageSnapshot current) {
+        CapacityForecaster forecaster = new CapacityForecaster();
+        try {
+            UsageHistoryStore.shared().query(host, current.getMountedOn(), current.getCapturedAtMillis() - LOOKBACK_MILLIS,
+                    current.getCapturedAtMillis(), forecaster::update);
+        } catch (IOException e) {
+            System.out.println("⚠️ Could not read usage history for " + host + ": " + e.getMessage());
+        }
+        return forecaster.update(current);
+    }
+
+    /** Folds one sample into its mount's model; samples not newer than the last one are ignored. */
+    public synchronized Forecast update(StorageSnapshot snapshot) {
+        GrowthModel model = models.computeIfAbsent(snapshot.getMountedOn(), mount -> new GrowthModel(snapshot));
+        model.add(snapshot, tauHours);
+        return model.forecast();
+    }
+
+    public synchronized Forecast forecast(String mount) {
+        GrowthModel model = models.get(mount);
+        return model == null ? null : model.forecast();
+    }
+
+    private static final class GrowthModel {
+        // Times in hours and bytes relative to the first sample, to keep the sums well conditioned.
+        private final long originMillis;
+        private final long originUsed;
+        private double s0;
+        private double st;
+        private double sy;
+        private double stt;
+        private double sty;
+        private int samples;
+        private StorageSnapshot last;
+
+        GrowthModel(StorageSnapshot first) {
+            this.originMillis = first.getCapturedAtMillis();
+            this.originUsed = first.getUsedBytes();
+        }
+
+        void add(StorageSnapshot snapshot, double tauHours) {
+            if (last != null && snapshot.getCapturedAtMillis() <= last.getCapturedAtMillis()) {
+                return;
+            }
+            double t = (snapshot.getCapturedAtMillis() - originMillis) / MILLIS_PER_HOUR;
+            double y = snapshot.getUsedBytes() - originUsed;
+            double decay = last == null ? 1 : Math.exp(-(snapshot.getCapturedAtMillis() - last.getCapturedAtMillis())
+                    / MILLIS_PER_HOUR / tauHours);
+            s0 = s0 * decay + 1;
+            st = st * decay + t;
+            sy = sy * decay + y;
+            stt = stt * decay + t * t;
+            sty = sty * decay + t * y;
+            samples++;
+            last = snapshot;
+        }
+
+        Forecast forecast() {
+            double denominator = s0 * stt - st * st;
+            double bytesPerHour = denominator > 1e-9 ? (s0 * sty - st * sy) / denominator : 0;
+            boolean reliable = samples >= 3 && denominator > 1e-9
+                    && last.getCapturedAtMillis() - originMillis >= MIN_SPAN_MILLIS;
+            return new Forecast(last, bytesPerHour * 24, reliable);
+        }
+    }
+
+    /** Where one mount is heading, as of its latest sample. */
+    public static final class Forecast {
+        private final StorageSnapshot latest;
+        private final double bytesPerDay;
+        private final boolean reliable;
+
+        Forecast(StorageSnapshot latest, double bytesPerDay, boolean reliable) {
+            this.latest = latest;
+            this.bytesPerDay = bytesPerDay;
+            this.reliable = reliable;
+        }
+
+        public StorageSnapshot getLatest() {
+            return latest;
+        }
+
+        public double getBytesPerDay() {
+            return bytesPerDay;
+        }
+
+        public boolean isReliable() {
+            return reliable;
+        }
+
+        /**
+         * Millis from the latest sample until used space reaches {@code percent} of the
+         * volume at the current rate: 0 if it already has, {@link Long#MAX_VALUE} if it is
+         * not growing.
+         */
+        public long getMillisUntil(int percent) {
+            // df's Use% is used / (used + avail), so the target is measured the same way.
+            double target = (latest.getUsedBytes() + latest.getAvailBytes()) * percent / 100.0;
+            double remaining = target - latest.getUsedBytes();
+            if (remaining <= 0) {
+                return 0;
+            }
+            if (bytesPerDay <= 0) {
+                return Long.MAX_VALUE;
+            }
+            double millis = remaining / bytesPerDay * TimeUnit.DAYS.toMillis(1);
+            return millis >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) millis;
+        }
+
+        public static String humanDuration(long millis) {
+            if (millis == 0) {
+                return "now";
+            }
+            long hours = TimeUnit.MILLISECONDS.toHours(millis);
+            if (hours > 24 * 365) {
+                return millis == Long.MAX_VALUE ? "never" : "over a year";
+            }
+            if (hours >= 48) {
+                return hours / 24 + "d " + hours % 24 + "h";
+            }
+            return hours > 0 ? hours + "h" : TimeUnit.MILLISECONDS.toMinutes(millis) + "m";
+        }
+
+        @Override
+        public String toString() {
+            String rate = (bytesPerDay < 0 ? "-" : "+") + StorageSnapshot.humanBytes((long) Math.abs(bytesPerDay)) + "/day";
+            return latest.getMountedOn() + " " + latest.getUsePercent() + "% used, " + rate + ", 90% in "
+                    + humanDuration(getMillisUntil(90)) + ", full in " + humanDuration(getMillisUntil(100))
+                    + (reliable ? "" : " (not enough history)");
+        }
+    }
+}
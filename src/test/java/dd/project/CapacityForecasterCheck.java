@@ -0,0 +1,87 @@
+package dd.project;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Feeds CapacityForecaster synthetic df samples with a known growth rate and checks the
+ * fitted slope, the time-to-threshold arithmetic and when a forecast becomes reliable.
+ */
+public class CapacityForecasterCheck {
+
+    private static final String MOUNT = "/mnt/local/nvmestorage";
+    private static final long T0 = 1_700_000_000_000L;
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long CAPACITY = 1_000_000_000L;
+
+    @Test
+    public void testLinearGrowthSlopeAndEta() {
+        CapacityForecaster forecaster = new CapacityForecaster();
+        CapacityForecaster.Forecast forecast = null;
+        // 1 MB an hour, ending at 800 MB of 1000 MB used.
+        for (int h = 0; h <= 24; h++) {
+            forecast = forecaster.update(sample(T0 + h * HOUR, 776_000_000L + h * 1_000_000L));
+        }
+        Assert.assertTrue(forecast.isReliable());
+        Assert.assertEquals(forecast.getBytesPerDay(), 24_000_000.0, 1.0);
+        // 90% is 100 MB away, 100% is 200 MB away, at 24 MB a day.
+        Assert.assertEquals(forecast.getMillisUntil(90), 100 * DAY / 24, 1000);
+        Assert.assertEquals(forecast.getMillisUntil(100), 200 * DAY / 24, 1000);
+        Assert.assertEquals(forecast.getMillisUntil(50), 0);
+        Assert.assertEquals(CapacityForecaster.Forecast.humanDuration(forecast.getMillisUntil(90)), "4d 4h");
+        Assert.assertSame(forecaster.forecast(MOUNT).getLatest(), forecast.getLatest());
+    }
+
+    @Test
+    public void testShrinkingVolumeNeverFills() {
+        CapacityForecaster forecaster = new CapacityForecaster();
+        CapacityForecaster.Forecast forecast = null;
+        for (int h = 0; h <= 12; h++) {
+            forecast = forecaster.update(sample(T0 + h * HOUR, 600_000_000L - h * 2_000_000L));
+        }
+        Assert.assertEquals(forecast.getBytesPerDay(), -48_000_000.0, 1.0);
+        Assert.assertEquals(forecast.getMillisUntil(90), Long.MAX_VALUE);
+        Assert.assertEquals(CapacityForecaster.Forecast.humanDuration(Long.MAX_VALUE), "never");
+    }
+
+    @Test
+    public void testReliabilityNeedsThreeSamplesAndMinimumSpan() {
+        CapacityForecaster forecaster = new CapacityForecaster();
+        Assert.assertFalse(forecaster.update(sample(T0, 100_000_000L)).isReliable());
+        Assert.assertFalse(forecaster.update(sample(T0 + 10 * HOUR, 110_000_000L)).isReliable(), "two samples");
+
+        CapacityForecaster shortSpan = new CapacityForecaster();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertFalse(shortSpan.update(sample(T0 + i * CapacityForecaster.MIN_SPAN_MILLIS / 10, 100_000_000L + i)).isReliable(),
+                    "sample " + i + " is within the minimum span");
+        }
+        Assert.assertTrue(shortSpan.update(sample(T0 + CapacityForecaster.MIN_SPAN_MILLIS, 100_000_010L)).isReliable());
+    }
+
+    @Test
+    public void testOlderSamplesFadeAndOutOfOrderSamplesAreIgnored() {
+        CapacityForecaster forecaster = new CapacityForecaster(DAY);
+        long t = T0;
+        long used = 100_000_000L;
+        for (int h = 0; h < 48; h++, t += HOUR) {
+            forecaster.update(sample(t, used += 1_000_000L));
+        }
+        double growing = forecaster.forecast(MOUNT).getBytesPerDay();
+        // An old sample arriving late must not move the fit.
+        Assert.assertEquals(forecaster.update(sample(T0 + HOUR, 0)).getBytesPerDay(), growing);
+
+        // Five half-lives without growth.
+        for (int h = 0; h < 5 * 24; h++, t += HOUR) {
+            forecaster.update(sample(t, used));
+        }
+        double flat = forecaster.forecast(MOUNT).getBytesPerDay();
+        Assert.assertTrue(flat >= 0 && flat < growing * 0.25, "rate " + flat + " should have faded from " + growing);
+    }
+
+    private static StorageSnapshot sample(long timestamp, long used) {
+        return new StorageSnapshot("/dev/nvme0n1", CAPACITY, used, CAPACITY - used, 1_000_000L, 1000L, 999_000L, MOUNT, timestamp);
+    }
+}
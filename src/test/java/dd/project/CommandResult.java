@@ -0,0 +1,56 @@
+package dd.project;
+
+/**
+ * Outcome of a single remote command: captured streams, exit code and timing.
+ */
+public class CommandResult {
+
+    private final String command;
+    private final String stdout;
+    private final String stderr;
+    private final int exitStatus;
+    private final long elapsedMillis;
+    private final boolean timedOut;
+
+    public CommandResult(String command, String stdout, String stderr, int exitStatus, long elapsedMillis, boolean timedOut) {
+        this.command = command;
+        this.stdout = stdout;
+        this.stderr = stderr;
+        this.exitStatus = exitStatus;
+        this.elapsedMillis = elapsedMillis;
+        this.timedOut = timedOut;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public String getStdout() {
+        return stdout;
+    }
+
+    public String getStderr() {
+        return stderr;
+    }
+
+    public int getExitStatus() {
+        return exitStatus;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public boolean isSuccess() {
+        return !timedOut && exitStatus == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "'" + command + "' exit=" + exitStatus + " in " + elapsedMillis + "ms" + (timedOut ? " (timed out)" : "");
+    }
+}
@@ -0,0 +1,409 @@
+package dd.project;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Read-only index of a directory listing that holds millions of paths without a String
+ * or FileEntry per path. Paths are kept in UTF-8 byte order in one byte arena, front
+ * coded in blocks of {@link #BLOCK_SIZE}: each path stores only the length of the prefix
+ * it shares with the previous one plus its own suffix, and every block starts with a full
+ * path so lookups can binary search the block heads. Sizes and mtimes live in parallel
+ * long arrays, plus an int permutation sorted by mtime for range queries.
+ *
+ * Iteration and range queries hand out a reused byte buffer instead of objects; call
+ * {@link #path(int)} or {@link #entry(int)} only for the entries actually reported.
+ */
+public final class CompactFileIndex {
+
+    public static final int BLOCK_SIZE = 16;
+
+    private static final int FORMAT_VERSION = 1;
+
+    /** UTF-8 byte order, which is code point order; the order the builder expects. */
+    public static final Comparator<String> PATH_ORDER = CompactFileIndex::comparePaths;
+    public static final Comparator<FileEntry> ENTRY_PATH_ORDER = (a, b) -> comparePaths(a.getPath(), b.getPath());
+
+    private final byte[] arena;
+    private final int[] blockOffsets;
+    private final long[] sizes;
+    private final long[] mtimes;
+    private final int[] byMtime;
+    private final int count;
+    private final int maxPathBytes;
+
+    /** Receives each entry's index and path bytes; {@code path} is reused after the call returns. */
+    public interface EntryVisitor {
+        void visit(int index, byte[] path, int pathLength, long sizeBytes, long mtimeMillis);
+    }
+
+    private CompactFileIndex(Builder builder) {
+        this.count = builder.count;
+        this.arena = Arrays.copyOf(builder.arena, builder.arenaLength);
+        this.blockOffsets = Arrays.copyOf(builder.blockOffsets, (count + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        this.sizes = Arrays.copyOf(builder.sizes, count);
+        this.mtimes = Arrays.copyOf(builder.mtimes, count);
+        this.maxPathBytes = builder.maxPathBytes;
+        this.byMtime = new int[count];
+        for (int i = 0; i < count; i++) {
+            byMtime[i] = i;
+        }
+        sortByMtime(byMtime, new int[count], 0, count);
+    }
+
+    /** Sorts a copy of {@code entries} by path and indexes it; duplicate paths keep the last one. */
+    public static CompactFileIndex of(Collection<FileEntry> entries) {
+        List<FileEntry> sorted = new ArrayList<>(entries);
+        sorted.sort(ENTRY_PATH_ORDER);
+        Builder builder = new Builder();
+        for (int i = 0; i < sorted.size(); i++) {
+            if (i + 1 < sorted.size() && sorted.get(i).getPath().equals(sorted.get(i + 1).getPath())) {
+                continue;
+            }
+            builder.add(sorted.get(i));
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long getSizeBytes(int index) {
+        return sizes[index];
+    }
+
+    public long getMtimeMillis(int index) {
+        return mtimes[index];
+    }
+
+    /** Index of {@code path}, or -1. */
+    public int indexOf(String path) {
+        byte[] key = path.getBytes(StandardCharsets.UTF_8);
+        // Last block whose head is <= key.
+        int low = 0;
+        int high = blockOffsets.length - 1;
+        int block = -1;
+        int[] cursor = new int[1];
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            cursor[0] = blockOffsets[mid];
+            readVarInt(arena, cursor);
+            int length = readVarInt(arena, cursor);
+            int c = compareBytes(arena, cursor[0], length, key, 0, key.length);
+            if (c == 0) {
+                return mid * BLOCK_SIZE;
+            }
+            if (c < 0) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (block < 0) {
+            return -1;
+        }
+        byte[] scratch = new byte[maxPathBytes];
+        cursor[0] = blockOffsets[block];
+        int end = Math.min(count, (block + 1) * BLOCK_SIZE);
+        for (int i = block * BLOCK_SIZE; i < end; i++) {
+            int pathLength = decodeNext(cursor, scratch);
+            int c = compareBytes(scratch, 0, pathLength, key, 0, key.length);
+            if (c == 0) {
+                return i;
+            }
+            if (c > 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    public String path(int index) {
+        byte[] scratch = new byte[maxPathBytes];
+        int[] cursor = {blockOffsets[index / BLOCK_SIZE]};
+        int length = 0;
+        for (int i = index - index % BLOCK_SIZE; i <= index; i++) {
+            length = decodeNext(cursor, scratch);
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    public FileEntry entry(int index) {
+        return new FileEntry(path(index), sizes[index], mtimes[index]);
+    }
+
+    /** Every entry in path order. */
+    public void forEach(EntryVisitor visitor) {
+        byte[] scratch = new byte[maxPathBytes];
+        int[] cursor = {0};
+        for (int i = 0; i < count; i++) {
+            int length = decodeNext(cursor, scratch);
+            visitor.visit(i, scratch, length, sizes[i], mtimes[i]);
+        }
+    }
+
+    /** A pull-style walk in path order, for merging two indexes. */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /** Indexes of entries with {@code fromMillis <= mtime < toMillis}, oldest first. */
+    public void forEachInMtimeRange(long fromMillis, long toMillis, IntConsumer consumer) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mtimes[byMtime[mid]] < fromMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < count && mtimes[byMtime[i]] < toMillis; i++) {
+            consumer.accept(byMtime[i]);
+        }
+    }
+
+    public static CompactFileIndex load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException(file + " has an unknown index format");
+            }
+            int count = in.readInt();
+            int maxPathBytes = in.readInt();
+            byte[] arena = new byte[in.readInt()];
+            in.readFully(arena);
+            Builder builder = new Builder();
+            builder.arena = arena;
+            builder.arenaLength = arena.length;
+            builder.count = count;
+            builder.maxPathBytes = maxPathBytes;
+            builder.sizes = new long[count];
+            builder.mtimes = new long[count];
+            for (int i = 0; i < count; i++) {
+                builder.sizes[i] = in.readLong();
+                builder.mtimes[i] = in.readLong();
+            }
+            // Block offsets are cheap to recover from the arena, so they are not stored.
+            builder.blockOffsets = new int[(count + BLOCK_SIZE - 1) / BLOCK_SIZE];
+            int[] cursor = {0};
+            for (int i = 0; i < count; i++) {
+                if (i % BLOCK_SIZE == 0) {
+                    builder.blockOffsets[i / BLOCK_SIZE] = cursor[0];
+                }
+                readVarInt(arena, cursor);
+                int suffix = readVarInt(arena, cursor);
+                cursor[0] += suffix;
+            }
+            return builder.build();
+        }
+    }
+
+    /** Writes to a temp file and renames it, like DirectorySnapshot. */
+    public void save(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(count);
+            out.writeInt(maxPathBytes);
+            out.writeInt(arena.length);
+            out.write(arena);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(sizes[i]);
+                out.writeLong(mtimes[i]);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Bytes held by the index's arrays. */
+    public long footprintBytes() {
+        return arena.length + 4L * blockOffsets.length + 8L * sizes.length + 8L * mtimes.length + 4L * byMtime.length;
+    }
+
+    // Decodes the entry at cursor into scratch, which must still hold the previous path.
+    private int decodeNext(int[] cursor, byte[] scratch) {
+        int shared = readVarInt(arena, cursor);
+        int suffix = readVarInt(arena, cursor);
+        System.arraycopy(arena, cursor[0], scratch, shared, suffix);
+        cursor[0] += suffix;
+        return shared + suffix;
+    }
+
+    private void sortByMtime(int[] indexes, int[] temp, int from, int to) {
+        if (to - from < 32) {
+            for (int i = from + 1; i < to; i++) {
+                int value = indexes[i];
+                int j = i - 1;
+                while (j >= from && mtimes[indexes[j]] > mtimes[value]) {
+                    indexes[j + 1] = indexes[j];
+                    j--;
+                }
+                indexes[j + 1] = value;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        sortByMtime(indexes, temp, from, mid);
+        sortByMtime(indexes, temp, mid, to);
+        System.arraycopy(indexes, from, temp, from, to - from);
+        for (int i = from, left = from, right = mid; i < to; i++) {
+            indexes[i] = right >= to || (left < mid && mtimes[temp[left]] <= mtimes[temp[right]]) ? temp[left++] : temp[right++];
+        }
+    }
+
+    private static int comparePaths(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        for (int i = 0; i < n; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x != y) {
+                // Surrogates sort after the rest of the BMP in code point (and UTF-8) order.
+                return Integer.compare(x >= 0xD800 ? x + (x >= 0xE000 ? -0x800 : 0x2000) : x,
+                        y >= 0xD800 ? y + (y >= 0xE000 ? -0x800 : 0x2000) : y);
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    private static int compareBytes(byte[] a, int aFrom, int aLength, byte[] b, int bFrom, int bLength) {
+        int n = Math.min(aLength, bLength);
+        for (int i = 0; i < n; i++) {
+            int c = (a[aFrom + i] & 0xFF) - (b[bFrom + i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    private static int readVarInt(byte[] bytes, int[] cursor) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[cursor[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /** Compares a cursor's path with another's, in {@link #PATH_ORDER}. */
+    public static int compare(Cursor a, Cursor b) {
+        return compareBytes(a.path, 0, a.pathLength, b.path, 0, b.pathLength);
+    }
+
+    public final class Cursor {
+        private final byte[] path = new byte[maxPathBytes];
+        private final int[] offset = {0};
+        private int pathLength;
+        private int index = -1;
+
+        public boolean next() {
+            if (index + 1 >= count) {
+                index = count;
+                return false;
+            }
+            index++;
+            pathLength = decodeNext(offset, path);
+            return true;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public long getSizeBytes() {
+            return sizes[index];
+        }
+
+        public long getMtimeMillis() {
+            return mtimes[index];
+        }
+
+        public FileEntry entry() {
+            return new FileEntry(new String(path, 0, pathLength, StandardCharsets.UTF_8), sizes[index], mtimes[index]);
+        }
+    }
+
+    /** Takes entries in {@link #PATH_ORDER}, e.g. straight from an ExternalFileEntrySorter. */
+    public static final class Builder {
+        private byte[] arena = new byte[1 << 16];
+        private int arenaLength;
+        private int[] blockOffsets = new int[64];
+        private long[] sizes = new long[1024];
+        private long[] mtimes = new long[1024];
+        private byte[] previous = new byte[0];
+        private int count;
+        private int maxPathBytes;
+
+        public Builder add(FileEntry entry) {
+            byte[] path = entry.getPath().getBytes(StandardCharsets.UTF_8);
+            if (count > 0 && compareBytes(previous, 0, previous.length, path, 0, path.length) >= 0) {
+                throw new IllegalArgumentException("Paths must be added in ascending order without duplicates: "
+                        + entry.getPath());
+            }
+            int shared = 0;
+            if (count % BLOCK_SIZE != 0) {
+                int n = Math.min(previous.length, path.length);
+                while (shared < n && previous[shared] == path[shared]) {
+                    shared++;
+                }
+            } else {
+                if (count / BLOCK_SIZE == blockOffsets.length) {
+                    blockOffsets = Arrays.copyOf(blockOffsets, blockOffsets.length * 2);
+                }
+                blockOffsets[count / BLOCK_SIZE] = arenaLength;
+            }
+            ensureArena(10 + path.length - shared);
+            writeVarInt(shared);
+            writeVarInt(path.length - shared);
+            System.arraycopy(path, shared, arena, arenaLength, path.length - shared);
+            arenaLength += path.length - shared;
+            if (count == sizes.length) {
+                sizes = Arrays.copyOf(sizes, count * 2);
+                mtimes = Arrays.copyOf(mtimes, count * 2);
+            }
+            sizes[count] = entry.getSizeBytes();
+            mtimes[count] = entry.getMtimeMillis();
+            maxPathBytes = Math.max(maxPathBytes, path.length);
+            previous = path;
+            count++;
+            return this;
+        }
+
+        public CompactFileIndex build() {
+            return new CompactFileIndex(this);
+        }
+
+        private void ensureArena(int extra) {
+            if (arenaLength + extra > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaLength + extra));
+            }
+        }
+
+        private void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                arena[arenaLength++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            arena[arenaLength++] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package dd.project;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Retained heap and lookup cost of CompactFileIndex against the HashMap<String, FileEntry>
+ * that DirectorySnapshot uses, for a postImageProcessor-like listing. The retained heap of
+ * each structure is measured after a full GC in setup (serial collector, so heap usage is
+ * exact) and printed before the first iteration.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=dd.project.CompactFileIndexBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-XX:+UseSerialGC"})
+public class CompactFileIndexBenchmark {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Param({"compact", "hashmap"})
+    public String structure;
+
+    @Param({"1000000"})
+    public int entries;
+
+    private String[] keys;
+    private CompactFileIndex index;
+    private Map<String, FileEntry> map;
+
+    @Setup
+    public void build() {
+        keys = new String[4096];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = path(ThreadLocalRandom.current().nextInt(entries));
+        }
+        long before = retainedHeap();
+        if (structure.equals("compact")) {
+            List<FileEntry> listing = new ArrayList<>(entries);
+            for (int i = 0; i < entries; i++) {
+                listing.add(entry(i));
+            }
+            index = CompactFileIndex.of(listing);
+        } else {
+            map = new HashMap<>();
+            for (int i = 0; i < entries; i++) {
+                FileEntry entry = entry(i);
+                map.put(entry.getPath(), entry);
+            }
+        }
+        long retained = retainedHeap() - before;
+        System.out.printf("%n%s: %d entries retain %.1f MB (%.0f bytes/entry)%n", structure, entries,
+                retained / 1048576.0, (double) retained / entries);
+    }
+
+    @Benchmark
+    public long lookup() {
+        String key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+        if (index != null) {
+            int i = index.indexOf(key);
+            return index.getSizeBytes(i);
+        }
+        return map.get(key).getSizeBytes();
+    }
+
+    @Benchmark
+    public long mtimeRangeOneDay() {
+        long[] total = {0};
+        if (index != null) {
+            index.forEachInMtimeRange(NOW - 10 * DAY, NOW - 9 * DAY, i -> total[0] += index.getSizeBytes(i));
+        } else {
+            for (FileEntry entry : map.values()) {
+                if (entry.getMtimeMillis() >= NOW - 10 * DAY && entry.getMtimeMillis() < NOW - 9 * DAY) {
+                    total[0] += entry.getSizeBytes();
+                }
+            }
+        }
+        return total[0];
+    }
+
+    private static String path(int i) {
+        return "slide_" + (i / 10_000) + "/section_" + (i / 100 % 100) + "/B_" + i + "_NISSL_ProcessedImage.jp2";
+    }
+
+    private static FileEntry entry(int i) {
+        return new FileEntry(path(i), 1L << (20 + i % 10), NOW - (i % 90) * DAY);
+    }
+
+    private static long retainedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(CompactFileIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
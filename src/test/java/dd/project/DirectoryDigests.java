@@ -0,0 +1,256 @@
+package dd.project;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Merkle digests of a directory tree, one line per directory, computed on the storage
+ * node so a scanner can tell which subtrees changed from O(directories) bytes.
+ *
+ * A directory's local digest covers its files' (name, size, mtime); its tree digest
+ * covers the local digest plus each subdirectory's (name, tree digest). Entry hashes are
+ * truncated SHA-256 combined by 128-bit addition, so the order a directory is read in
+ * does not matter and nothing per entry is kept. Output is post-order:
+ *
+ * <pre>
+ * treeDigest localDigest files bytes relative/path     ("." for the root)
+ * </pre>
+ *
+ * Runs from the agent jar on the host: {@code java -cp project-agent.jar dd.project.DirectoryDigests <dir>}.
+ * Names containing a newline are skipped, directories with everything below them, as the
+ * line format cannot carry them.
+ */
+public final class DirectoryDigests {
+
+    private DirectoryDigests() {
+    }
+
+    /** One output line. */
+    public static final class Digest {
+        private final String path;
+        private final String tree;
+        private final String local;
+        private final long files;
+        private final long bytes;
+
+        public Digest(String path, String tree, String local, long files, long bytes) {
+            this.path = path;
+            this.tree = tree;
+            this.local = local;
+            this.files = files;
+            this.bytes = bytes;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getTree() {
+            return tree;
+        }
+
+        public String getLocal() {
+            return local;
+        }
+
+        public long getFiles() {
+            return files;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public String toLine() {
+            return tree + " " + local + " " + files + " " + bytes + " " + path;
+        }
+
+        public static Digest parse(String line) {
+            String[] fields = line.split(" ", 5);
+            if (fields.length != 5) {
+                throw new IllegalArgumentException("Not a directory digest line: " + line);
+            }
+            return new Digest(fields[4], fields[0], fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: DirectoryDigests <directory>");
+            System.exit(2);
+        }
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        compute(Paths.get(args[0]), digest -> {
+            try {
+                out.write(digest.toLine());
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+    }
+
+    /** Walks {@code root} without following links and reports each directory once it is complete. */
+    public static void compute(Path root, Consumer<Digest> consumer) throws IOException {
+        MessageDigest sha = sha256();
+        Deque<Frame> open = new ArrayDeque<>();
+        Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!open.isEmpty() && dir.getFileName().toString().indexOf('\n') >= 0) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                open.push(new Frame(open.isEmpty() ? "." : relative(root, dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String name = file.getFileName().toString();
+                if (name.indexOf('\n') < 0) {
+                    Frame frame = open.peek();
+                    frame.local.add(sha, "f" + name + "\0" + attrs.size() + "\0" + attrs.lastModifiedTime().toMillis());
+                    frame.files++;
+                    frame.bytes += attrs.size();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // Vanished or unreadable entries are left out rather than failing the whole tree.
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                Frame frame = open.pop();
+                String local = frame.local.hex();
+                frame.children.add(sha, "l" + local);
+                String tree = frame.children.hex();
+                consumer.accept(new Digest(frame.path, tree, local, frame.files, frame.bytes));
+                Frame parent = open.peek();
+                if (parent != null) {
+                    parent.children.add(sha, "d" + dir.getFileName() + "\0" + tree);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /** Reads {@link #compute} output, keyed by relative path. */
+    public static Map<String, Digest> parse(List<String> lines) {
+        Map<String, Digest> digests = new LinkedHashMap<>();
+        for (String line : lines) {
+            if (!line.isEmpty()) {
+                Digest digest = Digest.parse(line);
+                digests.put(digest.getPath(), digest);
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * Directories whose own files differ between the two trees, found top-down: a subtree
+     * whose tree digest is unchanged is skipped without looking at anything below it.
+     * Directories that exist only in {@code previous} are not included.
+     */
+    public static List<String> changedDirectories(Map<String, Digest> previous, Map<String, Digest> current) {
+        Map<String, List<String>> children = new HashMap<>();
+        for (String path : current.keySet()) {
+            if (!path.equals(".")) {
+                int slash = path.lastIndexOf('/');
+                children.computeIfAbsent(slash < 0 ? "." : path.substring(0, slash), parent -> new ArrayList<>()).add(path);
+            }
+        }
+        List<String> changed = new ArrayList<>();
+        Deque<String> pending = new ArrayDeque<>();
+        if (current.containsKey(".")) {
+            pending.push(".");
+        }
+        while (!pending.isEmpty()) {
+            String path = pending.pop();
+            Digest now = current.get(path);
+            Digest before = previous.get(path);
+            if (before != null && before.getTree().equals(now.getTree())) {
+                continue;
+            }
+            if (before == null || !before.getLocal().equals(now.getLocal())) {
+                changed.add(path);
+            }
+            for (String child : children.getOrDefault(path, Collections.emptyList())) {
+                pending.push(child);
+            }
+        }
+        Collections.sort(changed);
+        return changed;
+    }
+
+    private static String relative(Path root, Path dir) {
+        return root.relativize(dir).toString().replace('\\', '/');
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required of every JRE", e);
+        }
+    }
+
+    private static final class Frame {
+        final String path;
+        final MultisetHash local = new MultisetHash();
+        final MultisetHash children = new MultisetHash();
+        long files;
+        long bytes;
+
+        Frame(String path) {
+            this.path = path;
+        }
+    }
+
+    // Sum of truncated SHA-256 hashes: order-independent and constant size.
+    private static final class MultisetHash {
+        long high;
+        long low;
+
+        void add(MessageDigest sha, String record) {
+            ByteBuffer hash = ByteBuffer.wrap(sha.digest(record.getBytes(StandardCharsets.UTF_8)));
+            long h = hash.getLong();
+            long l = hash.getLong();
+            long sum = low + l;
+            high += h + (Long.compareUnsigned(sum, low) < 0 ? 1 : 0);
+            low = sum;
+        }
+
+        String hex() {
+            return String.format("%016x%016x", high, low);
+        }
+    }
+}
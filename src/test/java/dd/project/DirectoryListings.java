@@ -0,0 +1,42 @@
+package dd.project;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Lists a directory for the postImageProcessor scanners, either through the configured
+ * StorageProbe each run or, with {@code -Dstorage.scan.mode=incremental} over SSH,
+ * from the incremental snapshot.
+ */
+public final class DirectoryListings {
+
+    private static final boolean INCREMENTAL = !StorageProbes.isLocal()
+            && "incremental".equalsIgnoreCase(System.getProperty("storage.scan.mode", "full"));
+
+    private DirectoryListings() {
+    }
+
+    /**
+     * Streams only the entries matching {@code filter}. In full mode the predicate runs on the
+     * host and only matches cross the wire; in incremental mode it is applied to the snapshot.
+     */
+    public static void forEachMatching(SshTarget target, String directory, RemoteFileFilter filter, Consumer<FileEntry> consumer)
+            throws IOException {
+        if (INCREMENTAL) {
+            IncrementalDirectoryScanner.ScanResult scan = IncrementalDirectoryScanner.shared().scan(target, directory);
+            System.out.println("📂 " + target + ":" + directory + " " + scan);
+            for (FileEntry entry : scan.getSnapshot().getEntries()) {
+                if (filter.matches(entry)) {
+                    consumer.accept(entry);
+                }
+            }
+        } else {
+            // The local walker calls back from several threads; the scanners' collectors are not thread-safe.
+            StorageProbes.forTarget(target).forEachEntry(directory, filter, entry -> {
+                synchronized (consumer) {
+                    consumer.accept(entry);
+                }
+            });
+        }
+    }
+}
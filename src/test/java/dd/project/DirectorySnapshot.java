@@ -0,0 +1,100 @@
+package dd.project;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Last known contents of one remote directory plus the watermark (remote epoch
+ * seconds) the next incremental scan asks for changes since.
+ */
+public class DirectorySnapshot {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final Map<String, FileEntry> entries = new HashMap<>();
+    private long watermarkSeconds;
+
+    public long getWatermarkSeconds() {
+        return watermarkSeconds;
+    }
+
+    public void setWatermarkSeconds(long watermarkSeconds) {
+        this.watermarkSeconds = watermarkSeconds;
+    }
+
+    public Collection<FileEntry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean contains(String path) {
+        return entries.containsKey(path);
+    }
+
+    public FileEntry get(String path) {
+        return entries.get(path);
+    }
+
+    /** Returns the entry this one replaced, or null if the path is new. */
+    public FileEntry put(FileEntry entry) {
+        return entries.put(entry.getPath(), entry);
+    }
+
+    /** Keeps only the given paths and returns how many entries were dropped. */
+    public int retainOnly(Collection<String> paths) {
+        int before = entries.size();
+        entries.keySet().retainAll(paths);
+        return before - entries.size();
+    }
+
+    public static DirectorySnapshot load(Path file) throws IOException {
+        DirectorySnapshot snapshot = new DirectorySnapshot();
+        if (!Files.exists(file)) {
+            return snapshot;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return snapshot;
+            }
+            snapshot.watermarkSeconds = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long mtime = in.readLong();
+                snapshot.put(new FileEntry(path, size, mtime));
+            }
+        }
+        return snapshot;
+    }
+
+    /** Writes to a temp file and renames it so a crash never leaves a torn snapshot. */
+    public void save(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(watermarkSeconds);
+            out.writeInt(entries.size());
+            for (FileEntry entry : entries.values()) {
+                out.writeUTF(entry.getPath());
+                out.writeLong(entry.getSizeBytes());
+                out.writeLong(entry.getMtimeMillis());
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
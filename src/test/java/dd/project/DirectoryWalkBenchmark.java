@@ -0,0 +1,111 @@
+package dd.project;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Sequential Files.walkFileTree against ParallelDirectoryWalker over a synthetic tree
+ * of 100 x 100 directories with {@code files} entries in total. The tree is built once
+ * under java.io.tmpdir and reused by later runs (delete dd-walk-* to rebuild).
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=dd.project.DirectoryWalkBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DirectoryWalkBenchmark {
+
+    private static final int FANOUT = 100;
+
+    @Param({"1000000"})
+    public int files;
+
+    private Path root;
+    private ForkJoinPool pool;
+    private ParallelDirectoryWalker walker;
+
+    @Setup
+    public void createTree() throws IOException {
+        root = Paths.get(System.getProperty("java.io.tmpdir"), "dd-walk-" + files);
+        Path complete = root.resolve(".complete");
+        if (!Files.exists(complete)) {
+            int perDirectory = Math.max(1, files / (FANOUT * FANOUT));
+            int created = 0;
+            for (int i = 0; i < FANOUT && created < files; i++) {
+                for (int j = 0; j < FANOUT && created < files; j++) {
+                    Path directory = Files.createDirectories(root.resolve("slide_" + i).resolve("section_" + j));
+                    for (int k = 0; k < perDirectory && created < files; k++, created++) {
+                        Path file = directory.resolve("B_" + k + "_NISSL.jp2");
+                        if (!Files.exists(file)) {
+                            Files.write(file, new byte[k % 4]);
+                        }
+                    }
+                }
+            }
+            Files.createFile(complete);
+        }
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        walker = new ParallelDirectoryWalker(pool);
+    }
+
+    @TearDown
+    public void stopPool() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public long walkFileTree() throws IOException {
+        long[] totals = {0, 0};
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                totals[0]++;
+                totals[1] += attrs.size();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return totals[0] + totals[1];
+    }
+
+    @Benchmark
+    public long parallelWalker() throws IOException {
+        LongAdder count = new LongAdder();
+        LongAdder bytes = new LongAdder();
+        walker.walk(root, Integer.MAX_VALUE, entry -> {
+            count.increment();
+            bytes.add(entry.getSizeBytes());
+        });
+        return count.sum() + bytes.sum();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(DirectoryWalkBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,50 @@
+package dd.project;
+
+import java.io.IOException;
+
+import org.apache.sshd.core.CoreModuleProperties;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.auth.password.AcceptAllPasswordAuthenticator;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.server.shell.ProcessShellFactory;
+
+/**
+ * Local SSH server for benchmarks and dry runs: accepts any user and password and
+ * runs exec requests through {@code /bin/sh -c}, so distinct user names stand in for
+ * distinct hosts without a real fleet.
+ */
+public final class EmbeddedSshServer implements AutoCloseable {
+
+    private final SshServer server;
+
+    public EmbeddedSshServer() throws IOException {
+        this(0);
+    }
+
+    public EmbeddedSshServer(int port) throws IOException {
+        server = SshServer.setUpDefaultServer();
+        server.setHost("127.0.0.1");
+        server.setPort(port);
+        // Like sshd, so small sentinel writes are not held back by Nagle's algorithm.
+        CoreModuleProperties.TCP_NODELAY.set(server, true);
+        server.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
+        server.setPasswordAuthenticator(AcceptAllPasswordAuthenticator.INSTANCE);
+        server.setCommandFactory((channel, command) ->
+                new ProcessShellFactory(command, "/bin/sh", "-c", command).createShell(channel));
+        server.setShellFactory(new ProcessShellFactory("/bin/sh", "/bin/sh"));
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getPort();
+    }
+
+    public SshTarget target(String user) {
+        return new SshTarget(user, "127.0.0.1", getPort(), "local");
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.stop(true);
+    }
+}
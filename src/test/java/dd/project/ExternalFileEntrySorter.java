@@ -0,0 +1,197 @@
+package dd.project;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Sorts any number of FileEntry records with bounded heap. Entries are buffered up to
+ * {@code storage.sort.run.entries} (default 100k), sorted and spilled as a run to a temp
+ * file; {@link #forEachSorted} then k-way merges the runs, at most
+ * {@code storage.sort.fan.in} (default 64) at a time, in extra passes if needed.
+ *
+ * Run records are a varint path length, the UTF-8 path, then size and mtime as zigzag
+ * varints (AgentProtocol's encoding). Listings that fit in one run never touch disk.
+ * Feed it as a Consumer from DirectoryListings; close it to delete the runs.
+ */
+public class ExternalFileEntrySorter implements Consumer<FileEntry>, AutoCloseable {
+
+    public static final Comparator<FileEntry> OLDEST_FIRST =
+            Comparator.comparingLong(FileEntry::getMtimeMillis).thenComparing(FileEntry::getPath);
+    public static final Comparator<FileEntry> LARGEST_FIRST =
+            Comparator.comparingLong(FileEntry::getSizeBytes).reversed().thenComparing(FileEntry::getPath);
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final Comparator<FileEntry> order;
+    private final FileEntry[] buffer;
+    private final int fanIn;
+    private final Path tempDirectory;
+    private final List<Path> runs = new ArrayList<>();
+    private int buffered;
+    private long count;
+
+    public ExternalFileEntrySorter(Comparator<FileEntry> order) {
+        this(order, Integer.getInteger("storage.sort.run.entries", 100_000), Integer.getInteger("storage.sort.fan.in", 64),
+                Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    public ExternalFileEntrySorter(Comparator<FileEntry> order, int runEntries, int fanIn, Path tempDirectory) {
+        this.order = order;
+        this.buffer = new FileEntry[runEntries];
+        this.fanIn = Math.max(2, fanIn);
+        this.tempDirectory = tempDirectory;
+    }
+
+    @Override
+    public void accept(FileEntry entry) {
+        if (buffered == buffer.length) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Spilling a sorted run to " + tempDirectory + " failed", e);
+            }
+        }
+        buffer[buffered++] = entry;
+        count++;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /** Number of runs spilled to disk so far; 0 while everything fits in memory. */
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /** Streams every entry added so far in order. */
+    public void forEachSorted(Consumer<FileEntry> consumer) throws IOException {
+        if (runs.isEmpty()) {
+            Arrays.sort(buffer, 0, buffered, order);
+            for (int i = 0; i < buffered; i++) {
+                consumer.accept(buffer[i]);
+            }
+            return;
+        }
+        spill();
+        while (runs.size() > fanIn) {
+            List<Path> batch = new ArrayList<>(runs.subList(0, fanIn));
+            runs.subList(0, fanIn).clear();
+            Path merged = Files.createTempFile(tempDirectory, "dd-sort-", ".run");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(merged), BUFFER_BYTES))) {
+                merge(batch, entry -> write(out, entry));
+            }
+            runs.add(merged);
+            for (Path run : batch) {
+                Files.deleteIfExists(run);
+            }
+        }
+        merge(runs, consumer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        Arrays.fill(buffer, 0, buffered, null);
+        buffered = 0;
+    }
+
+    private void spill() throws IOException {
+        if (buffered == 0) {
+            return;
+        }
+        Arrays.sort(buffer, 0, buffered, order);
+        Path run = Files.createTempFile(tempDirectory, "dd-sort-", ".run");
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), BUFFER_BYTES))) {
+            for (int i = 0; i < buffered; i++) {
+                write(out, buffer[i]);
+                buffer[i] = null;
+            }
+        }
+        buffered = 0;
+    }
+
+    private void merge(List<Path> inputs, Consumer<FileEntry> consumer) throws IOException {
+        PriorityQueue<RunReader> heads = new PriorityQueue<>(inputs.size(), (a, b) -> order.compare(a.head, b.head));
+        try {
+            for (Path input : inputs) {
+                RunReader reader = new RunReader(input);
+                if (reader.advance()) {
+                    heads.add(reader);
+                } else {
+                    reader.in.close();
+                }
+            }
+            while (!heads.isEmpty()) {
+                RunReader next = heads.poll();
+                consumer.accept(next.head);
+                if (next.advance()) {
+                    heads.add(next);
+                } else {
+                    next.in.close();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (RunReader reader : heads) {
+                reader.in.close();
+            }
+        }
+    }
+
+    private static void write(DataOutputStream out, FileEntry entry) {
+        try {
+            byte[] path = entry.getPath().getBytes(StandardCharsets.UTF_8);
+            AgentProtocol.writeVarLong(out, path.length);
+            out.write(path);
+            AgentProtocol.writeVarLong(out, entry.getSizeBytes());
+            AgentProtocol.writeVarLong(out, entry.getMtimeMillis());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class RunReader {
+        final DataInputStream in;
+        FileEntry head;
+
+        RunReader(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFFER_BYTES));
+        }
+
+        boolean advance() throws IOException {
+            long length;
+            try {
+                length = AgentProtocol.readVarLong(in);
+            } catch (EOFException e) {
+                head = null;
+                return false;
+            }
+            byte[] path = new byte[(int) length];
+            in.readFully(path);
+            head = new FileEntry(new String(path, StandardCharsets.UTF_8), AgentProtocol.readVarLong(in),
+                    AgentProtocol.readVarLong(in));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package dd.project;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Sorts random entries with tiny runs and a fan-in of two, so the merge needs several
+ * passes, and checks the order and that no run files are left in the temp directory.
+ */
+public class ExternalFileEntrySorterCheck {
+
+    private Path directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("dd-sort");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testMultiPassMergeAndCleanup() throws IOException {
+        List<FileEntry> input = randomEntries(1000);
+        List<FileEntry> output = new ArrayList<>();
+        try (ExternalFileEntrySorter sorter = new ExternalFileEntrySorter(ExternalFileEntrySorter.OLDEST_FIRST, 16, 2, directory)) {
+            input.forEach(sorter);
+            Assert.assertEquals(sorter.getCount(), 1000);
+            Assert.assertEquals(sorter.getRunCount(), 62, "full runs spilled while adding");
+
+            sorter.forEachSorted(output::add);
+            Assert.assertEquals(sorter.getRunCount(), 2, "merged down to the fan-in");
+            Assert.assertEquals(runFiles(), 2, "intermediate runs are deleted after each pass");
+        }
+        Assert.assertEquals(runFiles(), 0, "close deletes the remaining runs");
+
+        input.sort(ExternalFileEntrySorter.OLDEST_FIRST);
+        Assert.assertEquals(output, input);
+    }
+
+    @Test
+    public void testInMemoryWhenOneRunFits() throws IOException {
+        List<FileEntry> input = randomEntries(100);
+        List<FileEntry> output = new ArrayList<>();
+        try (ExternalFileEntrySorter sorter = new ExternalFileEntrySorter(ExternalFileEntrySorter.LARGEST_FIRST, 100, 2, directory)) {
+            input.forEach(sorter);
+            sorter.forEachSorted(output::add);
+            Assert.assertEquals(sorter.getRunCount(), 0);
+            Assert.assertEquals(runFiles(), 0);
+        }
+        input.sort(ExternalFileEntrySorter.LARGEST_FIRST);
+        Assert.assertEquals(output, input);
+    }
+
+    private static List<FileEntry> randomEntries(int count) {
+        Random random = new Random(42);
+        List<FileEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // Few distinct mtimes, so ties are broken by path; some names are multibyte.
+            String name = (i % 3 == 0 ? "scan_Ω_" : "B_") + random.nextInt(100_000) + "_" + i + ".jp2";
+            entries.add(new FileEntry(name, random.nextInt(1 << 20), 1_700_000_000_000L + random.nextInt(50) * 1000L));
+        }
+        return entries;
+    }
+
+    private long runFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("dd-sort-")).count();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package dd.project;
+
+/**
+ * One directory entry with its byte-exact size and modification time.
+ */
+public final class FileEntry {
+
+    private final String path;
+    private final long sizeBytes;
+    private final long mtimeMillis;
+
+    public FileEntry(String path, long sizeBytes, long mtimeMillis) {
+        this.path = path;
+        this.sizeBytes = sizeBytes;
+        this.mtimeMillis = mtimeMillis;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public long getMtimeMillis() {
+        return mtimeMillis;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof FileEntry)) {
+            return false;
+        }
+        FileEntry other = (FileEntry) o;
+        return sizeBytes == other.sizeBytes && mtimeMillis == other.mtimeMillis && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * path.hashCode() + Long.hashCode(sizeBytes)) + Long.hashCode(mtimeMillis);
+    }
+
+    @Override
+    public String toString() {
+        return path + " (" + sizeBytes + " bytes, mtime " + mtimeMillis + ")";
+    }
+}
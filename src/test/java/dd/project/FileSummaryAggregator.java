@@ -0,0 +1,188 @@
+package dd.project;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Folds a directory listing into a fixed-size summary as it streams past: count and
+ * bytes by age (up to 1d, 7d, 30d, older) and by extension, plus the K largest and K
+ * oldest entries. Memory does not depend on how many entries are fed, so an alert can
+ * describe a directory of millions of files in a few table rows.
+ *
+ * At most {@link #MAX_EXTENSIONS} distinct extensions are tracked; later ones are
+ * counted under "(other)". Not thread-safe; DirectoryListings already serializes calls.
+ */
+public class FileSummaryAggregator implements Consumer<FileEntry> {
+
+    public static final int MAX_EXTENSIONS = 32;
+    public static final int DEFAULT_TOP_K = Integer.getInteger("storage.summary.top.k", 10);
+
+    private static final String[] AGE_LABELS = {"< 1 day", "1-7 days", "7-30 days", "> 30 days"};
+    private static final long[] AGE_LIMITS_MILLIS = {TimeUnit.DAYS.toMillis(1), TimeUnit.DAYS.toMillis(7), TimeUnit.DAYS.toMillis(30)};
+    private static final Comparator<FileEntry> BY_SIZE = Comparator.comparingLong(FileEntry::getSizeBytes);
+    private static final Comparator<FileEntry> BY_AGE = Comparator.comparingLong(FileEntry::getMtimeMillis).reversed();
+
+    private final long nowMillis;
+    private final int topK;
+    private final long[] ageCounts = new long[AGE_LABELS.length];
+    private final long[] ageBytes = new long[AGE_LABELS.length];
+    private final Map<String, long[]> extensions = new LinkedHashMap<>();
+    // Heaps keep the smallest (resp. newest) of the current top K at their head, ready to be evicted.
+    private final PriorityQueue<FileEntry> largest;
+    private final PriorityQueue<FileEntry> oldest;
+    private long count;
+    private long bytes;
+
+    public FileSummaryAggregator() {
+        this(System.currentTimeMillis(), DEFAULT_TOP_K);
+    }
+
+    public FileSummaryAggregator(long nowMillis, int topK) {
+        this.nowMillis = nowMillis;
+        this.topK = topK;
+        this.largest = new PriorityQueue<>(topK + 1, BY_SIZE);
+        this.oldest = new PriorityQueue<>(topK + 1, BY_AGE);
+    }
+
+    @Override
+    public void accept(FileEntry entry) {
+        count++;
+        bytes += entry.getSizeBytes();
+        int bucket = ageBucket(nowMillis - entry.getMtimeMillis());
+        ageCounts[bucket]++;
+        ageBytes[bucket] += entry.getSizeBytes();
+
+        String extension = extension(entry.getPath());
+        long[] totals = extensions.get(extension);
+        if (totals == null) {
+            if (extensions.size() >= MAX_EXTENSIONS) {
+                extension = "(other)";
+                totals = extensions.get(extension);
+            }
+            if (totals == null) {
+                totals = new long[2];
+                extensions.put(extension, totals);
+            }
+        }
+        totals[0]++;
+        totals[1] += entry.getSizeBytes();
+
+        offer(largest, entry, BY_SIZE);
+        offer(oldest, entry, BY_AGE);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /** Largest first. */
+    public List<FileEntry> getLargest() {
+        return sorted(largest, BY_SIZE.reversed());
+    }
+
+    /** Oldest first. */
+    public List<FileEntry> getOldest() {
+        return sorted(oldest, BY_AGE.reversed());
+    }
+
+    /** One line for logs and collector alerts. */
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder(count + " files, " + StorageSnapshot.humanBytes(bytes));
+        for (int i = 0; i < AGE_LABELS.length; i++) {
+            if (ageCounts[i] > 0) {
+                line.append("; ").append(AGE_LABELS[i]).append(": ").append(ageCounts[i]);
+            }
+        }
+        if (!largest.isEmpty()) {
+            FileEntry top = getLargest().get(0);
+            line.append("; largest ").append(top.getPath()).append(" (").append(StorageSnapshot.humanBytes(top.getSizeBytes())).append(")");
+        }
+        return line.toString();
+    }
+
+    /** Tables for an alert email: by age, by extension, largest and oldest files. */
+    public String toHtml() {
+        StringBuilder html = new StringBuilder();
+        html.append("<p><b>").append(count).append("</b> files, <b>").append(StorageSnapshot.humanBytes(bytes)).append("</b> in total.</p>");
+        html.append("<table border='1' cellpadding='4' style='border-collapse:collapse;'><tr><th>Age</th><th>Files</th><th>Size</th></tr>");
+        for (int i = 0; i < AGE_LABELS.length; i++) {
+            row(html, AGE_LABELS[i], ageCounts[i], ageBytes[i]);
+        }
+        html.append("</table><br>");
+        html.append("<table border='1' cellpadding='4' style='border-collapse:collapse;'><tr><th>Extension</th><th>Files</th><th>Size</th></tr>");
+        List<Map.Entry<String, long[]>> byBytes = new ArrayList<>(extensions.entrySet());
+        byBytes.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+        for (Map.Entry<String, long[]> extension : byBytes) {
+            row(html, extension.getKey(), extension.getValue()[0], extension.getValue()[1]);
+        }
+        html.append("</table>");
+        files(html, "Largest files", getLargest());
+        files(html, "Oldest files", getOldest());
+        return html.toString();
+    }
+
+    private void offer(PriorityQueue<FileEntry> heap, FileEntry entry, Comparator<FileEntry> order) {
+        if (heap.size() < topK) {
+            heap.add(entry);
+        } else if (topK > 0 && order.compare(entry, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    private static List<FileEntry> sorted(PriorityQueue<FileEntry> heap, Comparator<FileEntry> order) {
+        List<FileEntry> entries = new ArrayList<>(heap);
+        entries.sort(order);
+        return entries;
+    }
+
+    private static int ageBucket(long ageMillis) {
+        for (int i = 0; i < AGE_LIMITS_MILLIS.length; i++) {
+            if (ageMillis <= AGE_LIMITS_MILLIS[i]) {
+                return i;
+            }
+        }
+        return AGE_LIMITS_MILLIS.length;
+    }
+
+    private static String extension(String path) {
+        int dot = path.lastIndexOf('.');
+        if (dot < 0 || dot < path.lastIndexOf('/') || dot == path.length() - 1) {
+            return "(none)";
+        }
+        return path.substring(dot).toLowerCase(Locale.ROOT);
+    }
+
+    private static void row(StringBuilder html, String label, long files, long size) {
+        html.append("<tr><td>").append(escape(label)).append("</td><td align='right'>").append(files)
+                .append("</td><td align='right'>").append(StorageSnapshot.humanBytes(size)).append("</td></tr>");
+    }
+
+    private static void files(StringBuilder html, String title, List<FileEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        html.append("<p><b>").append(title).append(":</b></p><pre>");
+        for (FileEntry entry : entries) {
+            html.append(String.format("%tF  %8s  ", entry.getMtimeMillis(), StorageSnapshot.humanBytes(entry.getSizeBytes())))
+                    .append(escape(entry.getPath())).append("\n");
+        }
+        html.append("</pre>");
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,77 @@
+package dd.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Storage hosts to probe, with the mounts to df and the directories to list on each.
+ */
+public class FleetInventory {
+
+    private final List<Host> hosts = new ArrayList<>();
+
+    public FleetInventory add(SshTarget target, List<String> mounts, List<String> directories) {
+        hosts.add(new Host(target, mounts, directories));
+        return this;
+    }
+
+    public List<Host> getHosts() {
+        return Collections.unmodifiableList(hosts);
+    }
+
+    /**
+     * The humanbrain storage nodes covered by the individual pp*, qd4 and dgx4 probes, logged
+     * in to as those probes do: the postImageProcessor scanners and dgx4storgae as appUser,
+     * the df probes of pp2, pp3 and pp4 (test1, PP2Storage, pp4storage) as hbp. Those hosts
+     * therefore appear twice, once per account.
+     */
+    public static FleetInventory humanbrain() {
+        String appUser = "appUser";
+        String appPassword = System.getProperty("fleet.password", "Brain@123");
+        String hbp = "hbp";
+        String hbpPassword = System.getProperty("fleet.hbp.password", "Health#123");
+        int port = 22;
+        List<String> nvmeMount = Arrays.asList("/mnt/local/nvmestorage");
+        List<String> postImageProcessor = Arrays.asList("/mnt/local/nvmestorage/postImageProcessor");
+        List<String> none = Collections.emptyList();
+
+        return new FleetInventory()
+                .add(new SshTarget(appUser, "dgx4.humanbrain.in", port, appPassword), nvmeMount, none)
+                .add(new SshTarget(appUser, "pp1.humanbrain.in", port, appPassword), none, Arrays.asList("/store/nvmestorage/postImageProcessor"))
+                .add(new SshTarget(hbp, "pp2.humanbrain.in", port, hbpPassword), nvmeMount, none)
+                .add(new SshTarget(appUser, "pp2.humanbrain.in", port, appPassword), none, postImageProcessor)
+                .add(new SshTarget(hbp, "pp3.humanbrain.in", port, hbpPassword), nvmeMount, none)
+                .add(new SshTarget(appUser, "pp3.humanbrain.in", port, appPassword), none, postImageProcessor)
+                .add(new SshTarget(hbp, "pp4.humanbrain.in", port, hbpPassword), nvmeMount, none)
+                .add(new SshTarget(appUser, "pp4.humanbrain.in", port, appPassword), none, postImageProcessor)
+                .add(new SshTarget(appUser, "pp5.humanbrain.in", port, appPassword), none, postImageProcessor)
+                .add(new SshTarget(appUser, "pp7.humanbrain.in", port, appPassword), none, postImageProcessor)
+                .add(new SshTarget(appUser, "qd4.humanbrain.in", port, appPassword), none, Arrays.asList("/mnt/local/nvme1/postImageProcessor"));
+    }
+
+    public static class Host {
+        private final SshTarget target;
+        private final List<String> mounts;
+        private final List<String> directories;
+
+        public Host(SshTarget target, List<String> mounts, List<String> directories) {
+            this.target = target;
+            this.mounts = Collections.unmodifiableList(new ArrayList<>(mounts));
+            this.directories = Collections.unmodifiableList(new ArrayList<>(directories));
+        }
+
+        public SshTarget getTarget() {
+            return target;
+        }
+
+        public List<String> getMounts() {
+            return mounts;
+        }
+
+        public List<String> getDirectories() {
+            return directories;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package dd.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Probes every host of an inventory concurrently so a sweep takes as long as the
+ * slowest host rather than the sum of all of them. All batches are started up front
+ * on the transport; how many run at once is up to the transport's threads.
+ */
+public class FleetProbeEngine {
+
+    private final SshTransport transport;
+    private final long hostTimeoutMillis;
+    private final long runDeadlineMillis;
+
+    public FleetProbeEngine(SshTransport transport, long hostTimeoutMillis, long runDeadlineMillis) {
+        this.transport = transport;
+        this.hostTimeoutMillis = hostTimeoutMillis;
+        this.runDeadlineMillis = runDeadlineMillis;
+    }
+
+    public static FleetProbeEngine fromSystemProperties() {
+        return new FleetProbeEngine(SshTransports.shared(),
+                Long.getLong("fleet.host.timeout.ms", 60000L),
+                Long.getLong("fleet.deadline.ms", 120000L));
+    }
+
+    public FleetReport run(FleetInventory inventory) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(runDeadlineMillis);
+        List<FleetInventory.Host> hosts = inventory.getHosts();
+
+        List<CompletableFuture<FleetReport.HostResult>> futures = new ArrayList<>();
+        for (FleetInventory.Host host : hosts) {
+            futures.add(probe(host));
+        }
+
+        List<FleetReport.HostResult> results = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            CompletableFuture<FleetReport.HostResult> future = futures.get(i);
+            SshTarget target = hosts.get(i).getTarget();
+            long remaining = deadline - System.nanoTime();
+            try {
+                results.add(future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                results.add(new FleetReport.HostResult(target, FleetReport.Status.TIMED_OUT, Collections.emptyList(),
+                        new TimeoutException("Run deadline of " + runDeadlineMillis + "ms reached"), elapsedMillis(start)));
+            } catch (ExecutionException e) {
+                results.add(new FleetReport.HostResult(target, FleetReport.Status.FAILED, Collections.emptyList(),
+                        e.getCause(), elapsedMillis(start)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return new FleetReport(results, elapsedMillis(start));
+    }
+
+    // One batched exec per host: byte and inode counts for every mount plus every directory listing.
+    private CompletableFuture<FleetReport.HostResult> probe(FleetInventory.Host host) {
+        long start = System.nanoTime();
+        SshTarget target = host.getTarget();
+        RemoteBatch batch = batchFor(host);
+        if (batch.isEmpty()) {
+            return CompletableFuture.completedFuture(
+                    new FleetReport.HostResult(target, FleetReport.Status.OK, Collections.emptyList(), null, 0));
+        }
+        long timeout = Math.max(1, Math.min(hostTimeoutMillis, runDeadlineMillis));
+        return batch.executeAsync(transport, target, timeout).handle((results, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                return new FleetReport.HostResult(target, FleetReport.Status.FAILED, Collections.emptyList(), cause, elapsedMillis(start));
+            }
+            for (CommandResult result : results) {
+                if (result.isTimedOut()) {
+                    return new FleetReport.HostResult(target, FleetReport.Status.TIMED_OUT, results,
+                            new TimeoutException(result.toString()), elapsedMillis(start));
+                }
+            }
+            return new FleetReport.HostResult(target, FleetReport.Status.OK, results, null, elapsedMillis(start));
+        });
+    }
+
+    static RemoteBatch batchFor(FleetInventory.Host host) {
+        RemoteBatch batch = new RemoteBatch();
+        for (String mount : host.getMounts()) {
+            batch.df(mount);
+        }
+        for (String directory : host.getDirectories()) {
+            batch.listing(directory);
+        }
+        return batch;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,96 @@
+package dd.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Aggregated outcome of one fleet sweep.
+ */
+public class FleetReport {
+
+    public enum Status { OK, FAILED, TIMED_OUT }
+
+    private final List<HostResult> hosts = new ArrayList<>();
+    private final long wallMillis;
+
+    public FleetReport(List<HostResult> hosts, long wallMillis) {
+        this.hosts.addAll(hosts);
+        this.wallMillis = wallMillis;
+    }
+
+    public List<HostResult> getHosts() {
+        return Collections.unmodifiableList(hosts);
+    }
+
+    public long getWallMillis() {
+        return wallMillis;
+    }
+
+    public long getSlowestHostMillis() {
+        long slowest = 0;
+        for (HostResult host : hosts) {
+            slowest = Math.max(slowest, host.getElapsedMillis());
+        }
+        return slowest;
+    }
+
+    public long getSummedHostMillis() {
+        long sum = 0;
+        for (HostResult host : hosts) {
+            sum += host.getElapsedMillis();
+        }
+        return sum;
+    }
+
+    public void print() {
+        System.out.println("+--------------------------------+-----------+----------+---------------------------------------------+");
+        System.out.println("| Host                           | Status    | Time(ms) | Detail                                      |");
+        System.out.println("+--------------------------------+-----------+----------+---------------------------------------------+");
+        for (HostResult host : hosts) {
+            String detail = host.getError() != null ? String.valueOf(host.getError().getMessage()) : host.getResults().size() + " command(s)";
+            if (detail.length() > 43) {
+                detail = detail.substring(0, 40) + "...";
+            }
+            System.out.printf("| %-30s | %-9s | %8d | %-43s |\n", host.getTarget(), host.getStatus(), host.getElapsedMillis(), detail);
+        }
+        System.out.println("+--------------------------------+-----------+----------+---------------------------------------------+");
+        System.out.println("⏱️ Wall time " + wallMillis + "ms, slowest host " + getSlowestHostMillis() + "ms, sum of hosts " + getSummedHostMillis() + "ms");
+    }
+
+    public static class HostResult {
+        private final SshTarget target;
+        private final Status status;
+        private final List<CommandResult> results;
+        private final Throwable error;
+        private final long elapsedMillis;
+
+        public HostResult(SshTarget target, Status status, List<CommandResult> results, Throwable error, long elapsedMillis) {
+            this.target = target;
+            this.status = status;
+            this.results = Collections.unmodifiableList(new ArrayList<>(results));
+            this.error = error;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public SshTarget getTarget() {
+            return target;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public List<CommandResult> getResults() {
+            return results;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+}
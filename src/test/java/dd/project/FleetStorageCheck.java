@@ -0,0 +1,77 @@
+package dd.project;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class FleetStorageCheck {
+
+    @Test
+    public void testFleetStorage() {
+        FleetProbeEngine engine = FleetProbeEngine.fromSystemProperties();
+        FleetReport report = engine.run(FleetInventory.humanbrain());
+
+        System.out.println("---------------------------------------FLEET STORAGE SWEEP:--------------------------------------");
+        report.print();
+        for (FleetReport.HostResult host : report.getHosts()) {
+            for (CommandResult result : host.getResults()) {
+                System.out.println("=== " + host.getTarget() + " → " + result);
+                System.err.print(result.getStderr());
+                byte[] stdout = result.getStdout().getBytes(StandardCharsets.UTF_8);
+                if (result.getCommand().startsWith(StorageSnapshot.DF_COMMAND)) {
+                    List<StorageSnapshot> rows = new ArrayList<>();
+                    StorageOutputParser parser = StorageOutputParser.forDfBytes(snapshot -> {
+                        System.out.println("    " + snapshot);
+                        rows.add(snapshot);
+                    });
+                    parser.write(stdout, 0, stdout.length);
+                    parser.close();
+                    UsageHistoryStore.record(host.getTarget().getHost(), rows);
+                } else {
+                    long[] totals = {0, 0};
+                    StorageOutputParser parser = StorageOutputParser.forFind(entry -> {
+                        totals[0]++;
+                        totals[1] += entry.getSizeBytes();
+                    });
+                    parser.write(stdout, 0, stdout.length);
+                    parser.close();
+                    System.out.println("    " + totals[0] + " entries, " + StorageSnapshot.humanBytes(totals[1]));
+                }
+            }
+        }
+        if (Boolean.getBoolean("storage.tree.digests")) {
+            reportTreeChanges(FleetInventory.humanbrain());
+        }
+        System.out.println(SshTransports.metricsSummary());
+
+        Assert.assertEquals(report.getHosts().size(), FleetInventory.humanbrain().getHosts().size(),
+                "Every inventory host should have a result");
+    }
+
+    /**
+     * With {@code -Dstorage.tree.digests=true}: which subtrees of each df-ed mount changed
+     * since the previous sweep, from MerkleTreeScanner (needs the agent jar on the host).
+     */
+    private static void reportTreeChanges(FleetInventory inventory) {
+        System.out.println("---------------------------------------TREE CHANGES:--------------------------------------");
+        for (FleetInventory.Host host : inventory.getHosts()) {
+            for (String mount : host.getMounts()) {
+                long[] totals = {0, 0};
+                try {
+                    MerkleTreeScanner.ScanResult scan = MerkleTreeScanner.shared().scan(host.getTarget(), mount, entry -> {
+                        totals[0]++;
+                        totals[1] += entry.getSizeBytes();
+                    });
+                    System.out.println("🌳 " + host.getTarget() + ":" + mount + " " + scan);
+                    System.out.println("    " + totals[0] + " entries in changed directories, " + StorageSnapshot.humanBytes(totals[1]));
+                } catch (IOException e) {
+                    System.out.println("⚠️ Tree digests of " + host.getTarget() + ":" + mount + " unavailable: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package dd.project;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps a persisted snapshot per host/directory and only pulls entries whose
+ * ctime moved past the last watermark, so steady-state transfer and parsing
+ * scale with churn rather than directory size. ctime is used instead of mtime
+ * because renames and chmods bump it too.
+ *
+ * Removals do not show up in a "changed since" query; the remote entry count
+ * is compared with the merged snapshot and a names-only listing is pulled to
+ * reconcile only when they disagree.
+ */
+public class IncrementalDirectoryScanner {
+
+    // Entries touched in the same second as the previous scan's clock read are fetched again.
+    private static final long WATERMARK_OVERLAP_SECONDS = 2;
+    private static final long SCAN_TIMEOUT_MS = Long.getLong("storage.scan.timeout.ms", 300000L);
+
+    private static final IncrementalDirectoryScanner SHARED = new IncrementalDirectoryScanner(SshTransports.uncached(),
+            Paths.get(System.getProperty("storage.state.dir", System.getProperty("user.home") + "/.dd-storage")));
+
+    private final SshTransport transport;
+    private final Path stateDir;
+
+    public IncrementalDirectoryScanner(SshTransport transport, Path stateDir) {
+        this.transport = transport;
+        this.stateDir = stateDir;
+    }
+
+    public static IncrementalDirectoryScanner shared() {
+        return SHARED;
+    }
+
+    public ScanResult scan(SshTarget target, String directory) throws IOException {
+        long start = System.nanoTime();
+        Path stateFile = stateFile(target, directory);
+        DirectorySnapshot snapshot = DirectorySnapshot.load(stateFile);
+        boolean fullScan = snapshot.getWatermarkSeconds() == 0;
+
+        String entries = "find " + RemoteBatch.quote(directory) + " -mindepth 1 -maxdepth 1 ! -type d";
+        String since = fullScan ? "" : " -newerct @" + (snapshot.getWatermarkSeconds() - WATERMARK_OVERLAP_SECONDS);
+
+        RemoteBatch batch = new RemoteBatch();
+        batch.raw("date +%s");
+        batch.raw(entries + " -printf . | wc -c");
+        batch.raw(entries + since + " -printf '" + StorageOutputParser.FIND_FORMAT + "'");
+        List<CommandResult> results = batch.execute(transport, target, SCAN_TIMEOUT_MS);
+        CommandResult clock = results.get(0);
+        CommandResult count = results.get(1);
+        CommandResult delta = results.get(2);
+        for (CommandResult result : results) {
+            if (!result.isSuccess()) {
+                throw new IOException("Incremental scan of " + directory + " on " + target + " failed: " + result
+                        + " " + result.getStderr().trim());
+            }
+        }
+
+        int[] added = {0};
+        int[] changed = {0};
+        byte[] deltaBytes = delta.getStdout().getBytes(StandardCharsets.UTF_8);
+        long transferred = deltaBytes.length;
+        StorageOutputParser parser = StorageOutputParser.forFind(entry -> {
+            FileEntry previous = snapshot.put(entry);
+            if (previous == null) {
+                added[0]++;
+            } else if (!previous.equals(entry)) {
+                changed[0]++;
+            }
+        });
+        parser.write(deltaBytes, 0, deltaBytes.length);
+        parser.close();
+
+        int removed = 0;
+        long remoteCount = Long.parseLong(count.getStdout().trim());
+        if (remoteCount != snapshot.size()) {
+            CommandResult names = transport.execute(target, entries + " -printf '%P\\0'", SCAN_TIMEOUT_MS);
+            if (!names.isSuccess()) {
+                throw new IOException("Listing names of " + directory + " on " + target + " failed: " + names);
+            }
+            transferred += names.getStdout().length();
+            Set<String> present = new HashSet<>();
+            for (String name : names.getStdout().split("\0")) {
+                if (!name.isEmpty()) {
+                    present.add(name);
+                }
+            }
+            removed = snapshot.retainOnly(present);
+        }
+
+        snapshot.setWatermarkSeconds(Long.parseLong(clock.getStdout().trim()));
+        snapshot.save(stateFile);
+        return new ScanResult(snapshot, added[0], changed[0], removed, fullScan, transferred,
+                (System.nanoTime() - start) / 1000000);
+    }
+
+    private Path stateFile(SshTarget target, String directory) {
+        String name = (target.key() + directory).replaceAll("[^A-Za-z0-9._-]", "_");
+        return stateDir.resolve(name + ".snapshot");
+    }
+
+    public static class ScanResult {
+        private final DirectorySnapshot snapshot;
+        private final int added;
+        private final int changed;
+        private final int removed;
+        private final boolean fullScan;
+        private final long transferredBytes;
+        private final long elapsedMillis;
+
+        ScanResult(DirectorySnapshot snapshot, int added, int changed, int removed, boolean fullScan,
+                long transferredBytes, long elapsedMillis) {
+            this.snapshot = snapshot;
+            this.added = added;
+            this.changed = changed;
+            this.removed = removed;
+            this.fullScan = fullScan;
+            this.transferredBytes = transferredBytes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public DirectorySnapshot getSnapshot() {
+            return snapshot;
+        }
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getChanged() {
+            return changed;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        public boolean isFullScan() {
+            return fullScan;
+        }
+
+        public long getTransferredBytes() {
+            return transferredBytes;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return (fullScan ? "full" : "incremental") + " scan: " + snapshot.size() + " entries, +" + added
+                    + " ~" + changed + " -" + removed + ", " + transferredBytes + " bytes in " + elapsedMillis + "ms";
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package dd.project;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jcraft.jsch.JSchException;
+
+/**
+ * The blocking JSch pool behind the transport interface. Every in-flight command
+ * holds one worker thread, and every open session one JSch reader thread.
+ */
+public final class JschSshTransport implements SshTransport {
+
+    private final SshSessionPool pool;
+    private final ExecutorService workers;
+
+    public JschSshTransport(SshSessionPool pool, int threads) {
+        this.pool = pool;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ssh-jsch-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public SshSessionPool getPool() {
+        return pool;
+    }
+
+    @Override
+    public CompletableFuture<CommandResult> executeAsync(SshTarget target, String command, OutputStream stdoutSink, long timeoutMillis) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.execute(target, command, stdoutSink, timeoutMillis);
+            } catch (JSchException e) {
+                throw new CompletionException(new IOException("SSH to " + target + " failed: " + e.getMessage(), e));
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, workers);
+    }
+
+    @Override
+    public String name() {
+        return "jsch";
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,176 @@
+package dd.project;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.PasswordAuthentication;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Plain-text SMTP stand-in for dry runs of the alert mail path: accepts any AUTH and
+ * every recipient, and keeps the raw DATA of each message instead of delivering it.
+ * Like EmbeddedSshServer, it listens on localhost only.
+ */
+public final class LocalSmtpServer implements AutoCloseable {
+
+    private final ServerSocket server;
+    private final long replyDelayMillis;
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+    private final List<Socket> clients = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    public LocalSmtpServer() throws IOException {
+        this(0);
+    }
+
+    /** {@code replyDelayMillis} is added before each reply, to stand in for a distant server. */
+    public LocalSmtpServer(long replyDelayMillis) throws IOException {
+        this.replyDelayMillis = replyDelayMillis;
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "local-smtp-" + server.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /** A Session that logs in to this server the way the alert senders log in to Gmail. */
+    public Session session(String user) {
+        Properties properties = new Properties();
+        properties.put("mail.smtp.host", "127.0.0.1");
+        properties.put("mail.smtp.port", String.valueOf(getPort()));
+        properties.put("mail.smtp.auth", "true");
+        return Session.getInstance(properties, new javax.mail.Authenticator() {
+            protected PasswordAuthentication getPasswordAuthentication() {
+                return new PasswordAuthentication(user, "local");
+            }
+        });
+    }
+
+    /**
+     * A text/html alert from monitor@example.com to {@code recipients} (oncall@example.com
+     * if none are given), shaped like the ones the storage checks send.
+     */
+    public static MimeMessage alert(Session session, String subject, String... recipients) throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress("monitor@example.com"));
+        for (String recipient : recipients.length == 0 ? new String[] {"oncall@example.com"} : recipients) {
+            message.addRecipient(Message.RecipientType.TO, new InternetAddress(recipient));
+        }
+        message.setSubject(subject);
+        message.setContent("<p>This is an automated alert: " + subject + "</p>", "text/html");
+        return message;
+    }
+
+    /** Raw DATA of every message received so far. */
+    public List<String> getMessages() {
+        return messages;
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    /** Closes every client connection without a reply, as a server restart would. */
+    public void dropConnections() throws IOException {
+        for (Socket client : clients) {
+            client.close();
+        }
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket client = server.accept();
+                connections.incrementAndGet();
+                clients.add(client);
+                Thread handler = new Thread(() -> serve(client), "local-smtp-client");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                // Closed.
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try (Socket socket = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)) {
+            reply(out, "220 localhost ESMTP stand-in");
+            for (String line; (line = in.readLine()) != null; ) {
+                String command = line.length() < 4 ? line.toUpperCase() : line.substring(0, 4).toUpperCase();
+                switch (command) {
+                    case "EHLO":
+                        reply(out, "250-localhost\r\n250-AUTH PLAIN LOGIN\r\n250 8BITMIME");
+                        break;
+                    case "AUTH":
+                        if (line.toUpperCase().startsWith("AUTH LOGIN")) {
+                            // Username and password prompts, answers ignored.
+                            reply(out, "334 VXNlcm5hbWU6");
+                            in.readLine();
+                            reply(out, "334 UGFzc3dvcmQ6");
+                            in.readLine();
+                        }
+                        reply(out, "235 2.7.0 Authentication successful");
+                        break;
+                    case "DATA":
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        StringBuilder data = new StringBuilder();
+                        for (String dataLine; (dataLine = in.readLine()) != null && !dataLine.equals("."); ) {
+                            data.append(dataLine.startsWith(".") ? dataLine.substring(1) : dataLine).append("\r\n");
+                        }
+                        messages.add(data.toString());
+                        reply(out, "250 2.0.0 Ok: queued");
+                        break;
+                    case "QUIT":
+                        reply(out, "221 2.0.0 Bye");
+                        return;
+                    default:
+                        // HELO, MAIL, RCPT, RSET, NOOP
+                        reply(out, "250 2.0.0 Ok");
+                }
+            }
+        } catch (IOException e) {
+            // Client went away or the connection was dropped.
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    private void reply(Writer out, String reply) throws IOException {
+        if (replyDelayMillis > 0) {
+            try {
+                Thread.sleep(replyDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        out.write(reply);
+        out.write("\r\n");
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        dropConnections();
+    }
+}
@@ -0,0 +1,74 @@
+package dd.project;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Reads capacity from {@link FileStore} and lists directories with the parallel walker,
+ * for a monitor running on the storage node itself. FileStore has no inode counts, so
+ * those are reported as -1.
+ */
+public class LocalStorageProbe implements StorageProbe {
+
+    private static final LocalStorageProbe SHARED = new LocalStorageProbe(new ParallelDirectoryWalker(
+            new ForkJoinPool(Integer.getInteger("storage.local.parallelism", Runtime.getRuntime().availableProcessors()))));
+
+    private static final String LOCAL_HOST = localHostName();
+
+    private final ParallelDirectoryWalker walker;
+
+    public LocalStorageProbe(ParallelDirectoryWalker walker) {
+        this.walker = walker;
+    }
+
+    public static LocalStorageProbe shared() {
+        return SHARED;
+    }
+
+    @Override
+    public List<StorageSnapshot> capacity(String mount) throws IOException {
+        Path path = Paths.get(mount).toAbsolutePath();
+        FileStore store = Files.getFileStore(path);
+        long size = store.getTotalSpace();
+        List<StorageSnapshot> rows = Collections.singletonList(new StorageSnapshot(store.name(), size,
+                size - store.getUnallocatedSpace(), store.getUsableSpace(), -1, -1, -1, mountPoint(path, store).toString(),
+                System.currentTimeMillis()));
+        UsageHistoryStore.record(LOCAL_HOST, rows);
+        return rows;
+    }
+
+    @Override
+    public void forEachEntry(String directory, RemoteFileFilter filter, Consumer<FileEntry> consumer) throws IOException {
+        walker.walk(Paths.get(directory), 1, entry -> {
+            if (filter.matches(entry)) {
+                consumer.accept(entry);
+            }
+        });
+    }
+
+    private static String localHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+    // The topmost ancestor still on the same FileStore, i.e. df's "Mounted on".
+    private static Path mountPoint(Path path, FileStore store) throws IOException {
+        Path mount = path;
+        for (Path parent = path.getParent(); parent != null && Files.getFileStore(parent).equals(store); parent = parent.getParent()) {
+            mount = parent;
+        }
+        return mount;
+    }
+}
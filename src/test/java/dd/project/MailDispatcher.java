@@ -0,0 +1,289 @@
+package dd.project;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.PasswordAuthentication;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+
+/**
+ * Keeps one logged-in SMTP connection per account and sends queued messages over it,
+ * so a burst of alerts pays one TLS + AUTH handshake instead of one per message.
+ *
+ * A single sender thread owns the Transport. Messages queued while it is busy go out
+ * back to back on the same connection; after {@code mail.dispatcher.idle.ms} without
+ * work the connection is closed (servers drop idle clients anyway). A send that fails on
+ * a reused connection is retried once on a fresh one.
+ *
+ * <pre>
+ * Session session = Session.getInstance(properties, authenticator);
+ * MimeMessage message = new MimeMessage(session);
+ * ...
+ * MailDispatcher.forSession(session).send(message);
+ * </pre>
+ */
+public final class MailDispatcher implements AutoCloseable {
+
+    private static final long IDLE_TIMEOUT_MS = Long.getLong("mail.dispatcher.idle.ms", 60000L);
+
+    private static final Map<String, MailDispatcher> DISPATCHERS = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (MailDispatcher dispatcher : DISPATCHERS.values()) {
+                dispatcher.close();
+            }
+        }, "mail-dispatcher-shutdown"));
+    }
+
+    private final Session session;
+    private final String key;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread sender;
+    private volatile boolean closed;
+
+    private Transport transport;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong connectNanos = new AtomicLong();
+    private final AtomicLong sendNanos = new AtomicLong();
+    private final AtomicLong maxSendNanos = new AtomicLong();
+
+    public MailDispatcher(Session session) {
+        this.session = session;
+        this.key = key(session);
+        sender = new Thread(this::run, "mail-dispatcher-" + key);
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * The shared dispatcher for the account {@code session} logs in as (protocol, user,
+     * host and port). Callers may build a new Session per alert; the first one seen for
+     * an account is the one whose connection is kept.
+     */
+    public static MailDispatcher forSession(Session session) {
+        return DISPATCHERS.computeIfAbsent(key(session), k -> new MailDispatcher(session));
+    }
+
+    private static String key(Session session) {
+        String host = session.getProperty("mail.smtp.host");
+        String port = session.getProperty("mail.smtp.port");
+        String user = session.getProperty("mail.smtp.user");
+        if (user == null) {
+            PasswordAuthentication auth = session.requestPasswordAuthentication(null, port == null ? -1 : Integer.parseInt(port),
+                    "smtp", null, null);
+            user = auth == null ? "" : auth.getUserName();
+        }
+        boolean ssl = Boolean.parseBoolean(session.getProperty("mail.smtp.ssl.enable"));
+        return (ssl ? "smtps" : "smtp") + "://" + user + "@" + host + ":" + (port == null ? "25" : port);
+    }
+
+    /** Queues {@code message}; the future completes once the server accepted it. */
+    public CompletableFuture<Receipt> submit(Message message) {
+        Pending pending = new Pending(message);
+        if (closed) {
+            pending.result.completeExceptionally(new MessagingException("Mail dispatcher for " + key + " is closed"));
+        } else {
+            queue.add(pending);
+        }
+        return pending.result;
+    }
+
+    /** Like {@link Transport#send(Message)}: returns once the message was accepted, or throws. */
+    public Receipt send(Message message) throws MessagingException {
+        try {
+            return submit(message).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while sending", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MessagingException) {
+                throw (MessagingException) e.getCause();
+            }
+            throw new MessagingException("Sending failed", (Exception) e.getCause());
+        }
+    }
+
+    private void run() {
+        while (!closed || !queue.isEmpty()) {
+            Pending pending;
+            try {
+                pending = queue.poll(IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (pending == null) {
+                disconnect();
+                continue;
+            }
+            deliver(pending);
+        }
+        disconnect();
+    }
+
+    private void deliver(Pending pending) {
+        long dequeued = System.nanoTime();
+        for (int attempt = 0; ; attempt++) {
+            boolean fresh = transport == null;
+            try {
+                // No NOOP probe per message: a connection the server dropped fails the send and is retried.
+                if (fresh) {
+                    connect();
+                }
+                Message message = pending.message;
+                message.saveChanges();
+                Address[] recipients = message.getAllRecipients();
+                if (recipients == null || recipients.length == 0) {
+                    throw new SendFailedException("No recipient addresses");
+                }
+                long start = System.nanoTime();
+                transport.sendMessage(message, recipients);
+                long elapsed = System.nanoTime() - start;
+                sent.incrementAndGet();
+                sendNanos.addAndGet(elapsed);
+                maxSendNanos.accumulateAndGet(elapsed, Math::max);
+                Receipt receipt = new Receipt(dequeued - pending.queuedAt, System.nanoTime() - dequeued, fresh);
+                System.out.println("📧 Sent \"" + message.getSubject() + "\" via " + key + " " + receipt);
+                pending.result.complete(receipt);
+                return;
+            } catch (MessagingException e) {
+                // Rejected recipients are not a connection problem; resending would duplicate the mail.
+                // A dropped connection can also surface as a SendFailedException, so ask the server.
+                boolean rejected = e instanceof SendFailedException && transport != null && transport.isConnected();
+                boolean retry = attempt == 0 && !fresh && !rejected;
+                if (!rejected) {
+                    disconnect();
+                }
+                if (!retry) {
+                    failed.incrementAndGet();
+                    pending.result.completeExceptionally(e);
+                    return;
+                }
+                System.out.println("⚠️ SMTP connection to " + key + " is broken, reconnecting: " + e.getMessage());
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                pending.result.completeExceptionally(e);
+                return;
+            }
+        }
+    }
+
+    private void connect() throws MessagingException {
+        long start = System.nanoTime();
+        Transport connecting = session.getTransport("smtp");
+        connecting.connect();
+        transport = connecting;
+        connects.incrementAndGet();
+        connectNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    private void disconnect() {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                // Already gone.
+            }
+            transport = null;
+        }
+    }
+
+    /** Sends what is already queued, then closes the connection. */
+    @Override
+    public void close() {
+        closed = true;
+        DISPATCHERS.remove(key, this);
+        sender.interrupt();
+        try {
+            sender.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Pending pending; (pending = queue.poll()) != null; ) {
+            pending.result.completeExceptionally(new MessagingException("Mail dispatcher for " + key + " is closed"));
+        }
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getConnects() {
+        return connects.get();
+    }
+
+    public double getAverageConnectMillis() {
+        long count = connects.get();
+        return count == 0 ? 0 : connectNanos.get() / 1e6 / count;
+    }
+
+    public double getAverageSendMillis() {
+        long count = sent.get();
+        return count == 0 ? 0 : sendNanos.get() / 1e6 / count;
+    }
+
+    public String stats() {
+        return String.format("%s: sent=%d failed=%d connects=%d avgConnect=%.1fms avgSend=%.1fms maxSend=%.1fms queued=%d",
+                key, getSent(), getFailed(), getConnects(), getAverageConnectMillis(), getAverageSendMillis(),
+                maxSendNanos.get() / 1e6, queue.size());
+    }
+
+    /** How long one message waited in the queue and took to send, including any reconnect. */
+    public static final class Receipt {
+        private final long queueNanos;
+        private final long sendNanos;
+        private final boolean newConnection;
+
+        Receipt(long queueNanos, long sendNanos, boolean newConnection) {
+            this.queueNanos = queueNanos;
+            this.sendNanos = sendNanos;
+            this.newConnection = newConnection;
+        }
+
+        public double getQueueMillis() {
+            return queueNanos / 1e6;
+        }
+
+        public double getSendMillis() {
+            return sendNanos / 1e6;
+        }
+
+        /** True when this message had to open the connection it went out on. */
+        public boolean isNewConnection() {
+            return newConnection;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("in %.1fms (queued %.1fms%s)", getSendMillis(), getQueueMillis(), newConnection ? ", new connection" : "");
+        }
+    }
+
+    private static final class Pending {
+        final Message message;
+        final long queuedAt = System.nanoTime();
+        final CompletableFuture<Receipt> result = new CompletableFuture<>();
+
+        Pending(Message message) {
+            this.message = message;
+        }
+    }
+}
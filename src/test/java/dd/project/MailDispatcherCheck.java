@@ -0,0 +1,51 @@
+package dd.project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.mail.Session;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Sends alert-shaped mail through MailDispatcher to a LocalSmtpServer and checks that a
+ * burst shares one connection and that a dropped connection is reopened.
+ */
+public class MailDispatcherCheck {
+
+    @Test
+    public void testBurstSharesOneConnection() throws Exception {
+        try (LocalSmtpServer smtp = new LocalSmtpServer();
+             MailDispatcher dispatcher = new MailDispatcher(smtp.session("burst@example.com"))) {
+            Session session = smtp.session("burst@example.com");
+            List<CompletableFuture<MailDispatcher.Receipt>> receipts = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                receipts.add(dispatcher.submit(LocalSmtpServer.alert(session, "ALERT: node-" + i)));
+            }
+            for (CompletableFuture<MailDispatcher.Receipt> receipt : receipts) {
+                receipt.get();
+            }
+            Assert.assertEquals(smtp.getMessages().size(), 20);
+            Assert.assertEquals(smtp.getConnections(), 1);
+            Assert.assertEquals(dispatcher.getConnects(), 1);
+            System.out.println(dispatcher.stats());
+        }
+    }
+
+    @Test
+    public void testReconnectsAfterDroppedConnection() throws Exception {
+        try (LocalSmtpServer smtp = new LocalSmtpServer();
+             MailDispatcher dispatcher = new MailDispatcher(smtp.session("drop@example.com"))) {
+            Session session = smtp.session("drop@example.com");
+            Assert.assertTrue(dispatcher.send(LocalSmtpServer.alert(session, "ALERT: before")).isNewConnection());
+            smtp.dropConnections();
+            MailDispatcher.Receipt receipt = dispatcher.send(LocalSmtpServer.alert(session, "ALERT: after"));
+            Assert.assertTrue(receipt.isNewConnection());
+            Assert.assertEquals(smtp.getMessages().size(), 2);
+            Assert.assertEquals(dispatcher.getConnects(), 2);
+            Assert.assertEquals(dispatcher.getFailed(), 0);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package dd.project;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Change detection for a whole tree such as /mnt/local/nvmestorage. DirectoryDigests runs
+ * on the host (from the agent jar) and returns one line per directory. The lines are
+ * compared with the previous scan's top-down, and only directories whose own files changed
+ * are listed. An unchanged tree costs O(directories) bytes instead of O(files).
+ *
+ * The remote command is {@code storage.digest.command} (default
+ * {@code java -cp ~/project-agent.jar dd.project.DirectoryDigests}) followed by the root.
+ * A directory whose listing fails (e.g. an unreadable entry makes find exit 1) is saved
+ * with a stale digest, as are its ancestors, so the next scan lists it again instead of
+ * treating its changes as seen.
+ */
+public class MerkleTreeScanner {
+
+    private static final String DIGEST_COMMAND =
+            System.getProperty("storage.digest.command", "java -cp ~/project-agent.jar dd.project.DirectoryDigests");
+    // Never equal to a computed digest, so a directory saved with it is compared as changed.
+    private static final String STALE = "-";
+    private static final long SCAN_TIMEOUT_MS = Long.getLong("storage.scan.timeout.ms", 300000L);
+
+    private static final MerkleTreeScanner SHARED = new MerkleTreeScanner(SshTransports.uncached(),
+            Paths.get(System.getProperty("storage.state.dir", System.getProperty("user.home") + "/.dd-storage")));
+
+    private final SshTransport transport;
+    private final Path stateDir;
+    private final String digestCommand;
+
+    public MerkleTreeScanner(SshTransport transport, Path stateDir) {
+        this(transport, stateDir, DIGEST_COMMAND);
+    }
+
+    public MerkleTreeScanner(SshTransport transport, Path stateDir, String digestCommand) {
+        this.transport = transport;
+        this.stateDir = stateDir;
+        this.digestCommand = digestCommand;
+    }
+
+    public static MerkleTreeScanner shared() {
+        return SHARED;
+    }
+
+    /**
+     * Streams the entries of every changed directory, with paths relative to {@code root},
+     * into {@code changedEntries}. The first scan of a tree lists every directory.
+     */
+    public ScanResult scan(SshTarget target, String root, Consumer<FileEntry> changedEntries) throws IOException {
+        long start = System.nanoTime();
+        CommandResult digestRun = transport.execute(target, digestCommand + " " + RemoteBatch.quote(root), SCAN_TIMEOUT_MS);
+        if (!digestRun.isSuccess()) {
+            throw new IOException("Digesting " + root + " on " + target + " failed: " + digestRun + " " + digestRun.getStderr().trim());
+        }
+        List<String> lines = Arrays.asList(digestRun.getStdout().split("\n"));
+        Map<String, DirectoryDigests.Digest> current = DirectoryDigests.parse(lines);
+        Path stateFile = stateFile(target, root);
+        Map<String, DirectoryDigests.Digest> previous = Files.exists(stateFile)
+                ? DirectoryDigests.parse(Files.readAllLines(stateFile, StandardCharsets.UTF_8))
+                : Collections.emptyMap();
+        List<String> changed = DirectoryDigests.changedDirectories(previous, current);
+
+        long listingBytes = 0;
+        List<String> failed = new ArrayList<>();
+        if (!changed.isEmpty()) {
+            RemoteBatch batch = new RemoteBatch();
+            for (String directory : changed) {
+                String path = RemoteBatch.quote(directory.equals(".") ? root : root + "/" + directory);
+                // Removed since the digest: nothing to list, and the next scan sees it gone.
+                batch.raw("if [ -d " + path + " ]; then find " + path + " -mindepth 1 -maxdepth 1 ! -type d -printf '"
+                        + StorageOutputParser.FIND_FORMAT + "'; fi");
+            }
+            List<CommandResult> results = batch.execute(transport, target, SCAN_TIMEOUT_MS);
+            for (int i = 0; i < results.size(); i++) {
+                CommandResult result = results.get(i);
+                if (!result.isSuccess()) {
+                    System.out.println("⚠️ Listing " + changed.get(i) + " under " + root + " on " + target + " failed, "
+                            + "will list it again next scan: " + result + " " + result.getStderr().trim());
+                    failed.add(changed.get(i));
+                    continue;
+                }
+                String prefix = changed.get(i).equals(".") ? "" : changed.get(i) + "/";
+                byte[] stdout = result.getStdout().getBytes(StandardCharsets.UTF_8);
+                listingBytes += stdout.length;
+                StorageOutputParser parser = StorageOutputParser.forFind(entry -> changedEntries.accept(
+                        new FileEntry(prefix + entry.getPath(), entry.getSizeBytes(), entry.getMtimeMillis())));
+                parser.write(stdout, 0, stdout.length);
+                parser.close();
+            }
+        }
+
+        Files.createDirectories(stateDir);
+        Path tmp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        Files.write(tmp, stateLines(current, failed), StandardCharsets.UTF_8);
+        Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        List<String> removed = new ArrayList<>();
+        for (String path : previous.keySet()) {
+            if (!current.containsKey(path)) {
+                removed.add(path);
+            }
+        }
+        return new ScanResult(current.size(), changed, removed, failed, previous.isEmpty(), digestRun.getStdout().length(),
+                listingBytes, (System.nanoTime() - start) / 1000000);
+    }
+
+    // The digests to compare the next scan with: a failed directory gets stale local and tree
+    // digests, its ancestors a stale tree digest so the top-down walk reaches it again.
+    private static List<String> stateLines(Map<String, DirectoryDigests.Digest> current, List<String> failed) {
+        Set<String> staleTrees = new HashSet<>();
+        for (String path : failed) {
+            for (String p = path; staleTrees.add(p) && !p.equals("."); ) {
+                int slash = p.lastIndexOf('/');
+                p = slash < 0 ? "." : p.substring(0, slash);
+            }
+        }
+        List<String> lines = new ArrayList<>(current.size());
+        for (DirectoryDigests.Digest digest : current.values()) {
+            if (staleTrees.contains(digest.getPath())) {
+                digest = new DirectoryDigests.Digest(digest.getPath(), STALE, failed.contains(digest.getPath()) ? STALE : digest.getLocal(),
+                        digest.getFiles(), digest.getBytes());
+            }
+            lines.add(digest.toLine());
+        }
+        return lines;
+    }
+
+    private Path stateFile(SshTarget target, String root) {
+        String name = (target.key() + root).replaceAll("[^A-Za-z0-9._-]", "_");
+        return stateDir.resolve(name + ".digests");
+    }
+
+    public static class ScanResult {
+        private final int directories;
+        private final List<String> changedDirectories;
+        private final List<String> removedDirectories;
+        private final List<String> failedDirectories;
+        private final boolean firstScan;
+        private final long digestBytes;
+        private final long listingBytes;
+        private final long elapsedMillis;
+
+        ScanResult(int directories, List<String> changedDirectories, List<String> removedDirectories, List<String> failedDirectories,
+                boolean firstScan, long digestBytes, long listingBytes, long elapsedMillis) {
+            this.directories = directories;
+            this.changedDirectories = Collections.unmodifiableList(changedDirectories);
+            this.removedDirectories = Collections.unmodifiableList(removedDirectories);
+            this.failedDirectories = Collections.unmodifiableList(failedDirectories);
+            this.firstScan = firstScan;
+            this.digestBytes = digestBytes;
+            this.listingBytes = listingBytes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getDirectories() {
+            return directories;
+        }
+
+        public List<String> getChangedDirectories() {
+            return changedDirectories;
+        }
+
+        public List<String> getRemovedDirectories() {
+            return removedDirectories;
+        }
+
+        /** Changed directories whose listing failed; their entries were not reported. */
+        public List<String> getFailedDirectories() {
+            return failedDirectories;
+        }
+
+        public boolean isFirstScan() {
+            return firstScan;
+        }
+
+        public boolean isUnchanged() {
+            return changedDirectories.isEmpty() && removedDirectories.isEmpty();
+        }
+
+        public long getTransferredBytes() {
+            return digestBytes + listingBytes;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return (firstScan ? "first scan, " : "") + directories + " directories, " + changedDirectories.size() + " changed, "
+                    + removedDirectories.size() + " removed" + (failedDirectories.isEmpty() ? "" : ", " + failedDirectories.size()
+                    + " failed to list") + "; transferred " + StorageSnapshot.humanBytes(digestBytes)
+                    + " of digests + " + StorageSnapshot.humanBytes(listingBytes) + " of listings in " + elapsedMillis + "ms";
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package dd.project;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Scans a temp tree through an EmbeddedSshServer, running DirectoryDigests from the test
+ * classpath, and checks which directories each rescan lists after changes and after a
+ * listing failure, and that names the digest lines cannot carry are skipped.
+ */
+public class MerkleTreeScannerCheck {
+
+    private EmbeddedSshServer server;
+    private SshSessionPool pool;
+    private SshTransport transport;
+    private Path tree;
+    private Path state;
+    private String digestCommand;
+
+    @BeforeClass
+    public void start() throws Exception {
+        server = new EmbeddedSshServer();
+        pool = new SshSessionPool();
+        transport = new JschSshTransport(pool, 2);
+        tree = Files.createTempDirectory("dd-tree");
+        state = Files.createTempDirectory("dd-tree-state");
+        digestCommand = RemoteBatch.quote(System.getProperty("java.home") + "/bin/java") + " -cp "
+                + RemoteBatch.quote(System.getProperty("java.class.path")) + " dd.project.DirectoryDigests";
+        for (String directory : new String[] {"a", "a/b", "c", "c/d"}) {
+            Files.createDirectories(tree.resolve(directory));
+        }
+        for (String file : new String[] {"top.jp2", "a/one.jp2", "a/b/two.jp2", "c/three.jp2", "c/d/four.jp2"}) {
+            write(file, "data");
+        }
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stop() throws Exception {
+        transport.close();
+        pool.close();
+        server.close();
+        for (Path root : new Path[] {tree, state}) {
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void testOnlyChangedDirectoriesAreListed() throws IOException {
+        MerkleTreeScanner scanner = new MerkleTreeScanner(transport, state.resolve("changes"), digestCommand);
+        SshTarget target = server.target("changes");
+
+        List<String> entries = new ArrayList<>();
+        MerkleTreeScanner.ScanResult first = scanner.scan(target, tree.toString(), entry -> entries.add(entry.getPath()));
+        Assert.assertTrue(first.isFirstScan());
+        Assert.assertEquals(first.getDirectories(), 5);
+        Assert.assertEquals(sorted(entries), Arrays.asList("a/b/two.jp2", "a/one.jp2", "c/d/four.jp2", "c/three.jp2", "top.jp2"));
+
+        entries.clear();
+        MerkleTreeScanner.ScanResult unchanged = scanner.scan(target, tree.toString(), entry -> entries.add(entry.getPath()));
+        Assert.assertTrue(unchanged.isUnchanged());
+        Assert.assertTrue(entries.isEmpty());
+
+        write("a/b/two.jp2", "more data");
+        Files.createDirectories(tree.resolve("c/new"));
+        write("c/new/five.jp2", "data");
+        entries.clear();
+        MerkleTreeScanner.ScanResult changed = scanner.scan(target, tree.toString(), entry -> entries.add(entry.getPath()));
+        Assert.assertEquals(changed.getChangedDirectories(), Arrays.asList("a/b", "c/new"));
+        Assert.assertEquals(sorted(entries), Arrays.asList("a/b/two.jp2", "c/new/five.jp2"));
+    }
+
+    @Test(dependsOnMethods = "testOnlyChangedDirectoriesAreListed")
+    public void testFailedListingIsRepeated() throws IOException {
+        MerkleTreeScanner scanner = new MerkleTreeScanner(transport, state.resolve("failures"), digestCommand);
+        SshTarget target = server.target("failures");
+        scanner.scan(target, tree.toString(), entry -> { });
+
+        write("c/d/four.jp2", "changed");
+        // find exits 1 for c/d, as it would for an unreadable entry.
+        String failing = RemoteBatch.quote(tree.resolve("c/d").toString());
+        SshTransport broken = new RewritingTransport(transport, "find " + failing, "find /nonexistent-dd-tree");
+        List<String> entries = new ArrayList<>();
+        MerkleTreeScanner.ScanResult failed = new MerkleTreeScanner(broken, state.resolve("failures"), digestCommand)
+                .scan(target, tree.toString(), entry -> entries.add(entry.getPath()));
+        Assert.assertEquals(failed.getChangedDirectories(), Collections.singletonList("c/d"));
+        Assert.assertEquals(failed.getFailedDirectories(), Collections.singletonList("c/d"));
+        Assert.assertTrue(entries.isEmpty());
+
+        // Nothing changed on the host since, but c/d was never listed: the next scan lists it, and only it.
+        MerkleTreeScanner.ScanResult retried = scanner.scan(target, tree.toString(), entry -> entries.add(entry.getPath()));
+        Assert.assertEquals(retried.getChangedDirectories(), Collections.singletonList("c/d"));
+        Assert.assertTrue(retried.getFailedDirectories().isEmpty());
+        Assert.assertEquals(entries, Collections.singletonList("c/d/four.jp2"));
+
+        Assert.assertTrue(scanner.scan(target, tree.toString(), entry -> { }).isUnchanged());
+    }
+
+    @Test
+    public void testNewlineNamesAreSkippedWithTheirSubtrees() throws IOException {
+        Path root = Files.createTempDirectory("dd-tree-newline");
+        try {
+            Files.createDirectories(root.resolve("plain"));
+            Files.write(root.resolve("plain/one.jp2"), new byte[] {1});
+            List<String> before = new ArrayList<>();
+            DirectoryDigests.compute(root, digest -> before.add(digest.toLine()));
+
+            Files.createDirectories(root.resolve("bad\nname/below"));
+            Files.write(root.resolve("bad\nname/below/two.jp2"), new byte[] {2});
+            Files.write(root.resolve("plain/bad\nfile.jp2"), new byte[] {3});
+            List<String> after = new ArrayList<>();
+            DirectoryDigests.compute(root, digest -> after.add(digest.toLine()));
+            for (String line : after) {
+                Assert.assertEquals(line.indexOf('\n'), -1, "digest line carries a newline: " + line);
+            }
+            Assert.assertEquals(DirectoryDigests.parse(after).keySet(), DirectoryDigests.parse(before).keySet());
+            Assert.assertEquals(after, before, "skipped names must not change any digest");
+        } finally {
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private void write(String file, String content) throws IOException {
+        Path path = tree.resolve(file);
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        // Distinct mtimes even within one clock tick.
+        Files.setLastModifiedTime(path, FileTime.fromMillis(1_700_000_000_000L + content.length() * 1000L));
+    }
+
+    private static List<String> sorted(List<String> values) {
+        List<String> copy = new ArrayList<>(values);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    /** Replaces part of every command before handing it on. */
+    private static final class RewritingTransport implements SshTransport {
+        private final SshTransport delegate;
+        private final String target;
+        private final String replacement;
+
+        RewritingTransport(SshTransport delegate, String target, String replacement) {
+            this.delegate = delegate;
+            this.target = target;
+            this.replacement = replacement;
+        }
+
+        @Override
+        public CompletableFuture<CommandResult> executeAsync(SshTarget host, String command, OutputStream stdoutSink, long timeoutMillis) {
+            return delegate.executeAsync(host, command.replace(target, replacement), stdoutSink, timeoutMillis);
+        }
+
+        @Override
+        public String name() {
+            return "rewriting";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
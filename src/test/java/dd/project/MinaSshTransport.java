@@ -0,0 +1,211 @@
+package dd.project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.channel.ChannelExec;
+import org.apache.sshd.client.future.ConnectFuture;
+import org.apache.sshd.client.keyverifier.AcceptAllServerKeyVerifier;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.core.CoreModuleProperties;
+
+/**
+ * Apache MINA SSHD client on NIO: every session is multiplexed over a small, fixed
+ * set of I/O threads and the connect, auth and exec steps are chained on futures, so
+ * no thread is parked per host or per command.
+ */
+public final class MinaSshTransport implements SshTransport {
+
+    private static final long CONNECT_TIMEOUT_MS = Long.getLong("ssh.pool.connect.timeout.ms", 15000L);
+    private static final long KEEPALIVE_MS = Long.getLong("ssh.pool.keepalive.ms", 30000L);
+
+    private final SshClient client;
+    private final Map<String, CompletableFuture<ClientSession>> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+
+    public MinaSshTransport(int ioThreads) {
+        client = SshClient.setUpDefaultClient();
+        // Host keys are not checked on the JSch side either (StrictHostKeyChecking=no).
+        client.setServerKeyVerifier(AcceptAllServerKeyVerifier.INSTANCE);
+        CoreModuleProperties.NIO_WORKERS.set(client, ioThreads);
+        CoreModuleProperties.HEARTBEAT_INTERVAL.set(client, Duration.ofMillis(KEEPALIVE_MS));
+        client.start();
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ssh-mina-timer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public CompletableFuture<CommandResult> executeAsync(SshTarget target, String command, OutputStream stdoutSink, long timeoutMillis) {
+        long start = System.nanoTime();
+        CompletableFuture<CommandResult> result = new CompletableFuture<>();
+        AtomicReference<ChannelExec> channelRef = new AtomicReference<>();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> timeout = timer.schedule(() -> {
+            timedOut.set(true);
+            ChannelExec channel = channelRef.get();
+            if (channel != null) {
+                channel.close(true);
+            } else {
+                result.complete(new CommandResult(command, "", "", -1, elapsedMillis(start), true));
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+
+        session(target).whenComplete((session, error) -> {
+            if (error != null) {
+                timeout.cancel(false);
+                result.completeExceptionally(error);
+                return;
+            }
+            ByteArrayOutputStream collected = stdoutSink == null ? new ByteArrayOutputStream() : null;
+            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+            ChannelExec channel;
+            try {
+                channel = session.createExecChannel(command);
+            } catch (IOException e) {
+                // The session died between being cached and used; the next call reconnects.
+                sessions.remove(target.key());
+                timeout.cancel(false);
+                result.completeExceptionally(e);
+                return;
+            }
+            channel.setOut(stdoutSink != null ? stdoutSink : collected);
+            channel.setErr(stderr);
+            channelRef.set(channel);
+            channel.addCloseFutureListener(closed -> {
+                timeout.cancel(false);
+                Integer exitStatus = channel.getExitStatus();
+                result.complete(new CommandResult(command,
+                        collected == null ? "" : new String(collected.toByteArray(), StandardCharsets.UTF_8),
+                        new String(stderr.toByteArray(), StandardCharsets.UTF_8),
+                        exitStatus == null ? -1 : exitStatus, elapsedMillis(start), timedOut.get()));
+            });
+            if (timedOut.get()) {
+                channel.close(true);
+                return;
+            }
+            try {
+                channel.open().addListener(opened -> {
+                    if (!opened.isOpened()) {
+                        result.completeExceptionally(new IOException("Opening exec channel on " + target + " failed",
+                                opened.getException()));
+                        channel.close(true);
+                    }
+                });
+            } catch (IOException e) {
+                result.completeExceptionally(e);
+                channel.close(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * One authenticated session per user@host:port, shared by every command to that
+     * host. Concurrent first calls wait on the same connect instead of racing.
+     */
+    private CompletableFuture<ClientSession> session(SshTarget target) {
+        String key = target.key();
+        while (true) {
+            CompletableFuture<ClientSession> existing = sessions.get(key);
+            if (existing != null && (!existing.isDone() || existing.getNow(null) != null && existing.getNow(null).isOpen())) {
+                return existing;
+            }
+            CompletableFuture<ClientSession> created = new CompletableFuture<>();
+            boolean installed = existing == null ? sessions.putIfAbsent(key, created) == null : sessions.replace(key, existing, created);
+            if (installed) {
+                connect(target, created);
+                return created;
+            }
+        }
+    }
+
+    private void connect(SshTarget target, CompletableFuture<ClientSession> created) {
+        String key = target.key();
+        ConnectFuture connect;
+        try {
+            connect = client.connect(target.getUser(), target.getHost(), target.getPort());
+        } catch (IOException e) {
+            fail(key, created, e);
+            return;
+        }
+        ScheduledFuture<?> connectTimeout = timer.schedule(() -> {
+            connect.cancel();
+            fail(key, created, new IOException("Connecting to " + target + " timed out after " + CONNECT_TIMEOUT_MS + "ms"));
+        }, CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        connect.addListener(connected -> {
+            if (!connected.isConnected()) {
+                connectTimeout.cancel(false);
+                fail(key, created, new IOException("Connecting to " + target + " failed", connected.getException()));
+                return;
+            }
+            ClientSession session = connected.getSession();
+            session.addPasswordIdentity(target.getPassword());
+            try {
+                session.auth().addListener(auth -> {
+                    connectTimeout.cancel(false);
+                    if (auth.isSuccess() && created.complete(session)) {
+                        return;
+                    }
+                    session.close(true);
+                    fail(key, created, new IOException("Authentication to " + target + " failed", auth.getException()));
+                });
+            } catch (IOException e) {
+                connectTimeout.cancel(false);
+                session.close(true);
+                fail(key, created, e);
+            }
+        });
+    }
+
+    private void fail(String key, CompletableFuture<ClientSession> created, Throwable error) {
+        sessions.remove(key, created);
+        created.completeExceptionally(error);
+    }
+
+    public int getOpenSessions() {
+        int open = 0;
+        for (CompletableFuture<ClientSession> session : sessions.values()) {
+            ClientSession s = session.getNow(null);
+            if (s != null && s.isOpen()) {
+                open++;
+            }
+        }
+        return open;
+    }
+
+    @Override
+    public String name() {
+        return "mina";
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        try {
+            client.stop();
+        } catch (RuntimeException ignored) {
+            // Best effort during shutdown.
+        }
+        sessions.clear();
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
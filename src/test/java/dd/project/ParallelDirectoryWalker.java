@@ -0,0 +1,128 @@
+package dd.project;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Fork/join replacement for a sequential {@code Files.walkFileTree}: every directory is
+ * its own task, and the per-entry stat calls of a large directory are split into
+ * chunks, so both deep trees and huge flat directories spread over all workers.
+ * Entries are reported with paths relative to the root, like find's {@code %P}.
+ * Symlinks are not followed, and entries that vanish mid-walk are skipped.
+ */
+public class ParallelDirectoryWalker {
+
+    // Below this many entries a directory is stat-ed by a single task.
+    private static final int STAT_CHUNK = 512;
+
+    private final ForkJoinPool pool;
+
+    public ParallelDirectoryWalker(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Reports every non-directory entry down to {@code maxDepth} levels below {@code root}
+     * (1 = direct children only). The consumer is called concurrently.
+     */
+    public void walk(Path root, int maxDepth, Consumer<FileEntry> consumer) throws IOException {
+        try {
+            pool.invoke(new DirectoryTask(root, root, 1, maxDepth, consumer));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path root;
+        private final Path directory;
+        private final int depth;
+        private final int maxDepth;
+        private final Consumer<FileEntry> consumer;
+
+        DirectoryTask(Path root, Path directory, int depth, int maxDepth, Consumer<FileEntry> consumer) {
+            this.root = root;
+            this.directory = directory;
+            this.depth = depth;
+            this.maxDepth = maxDepth;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void compute() {
+            List<Path> children = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path child : stream) {
+                    children.add(child);
+                }
+            } catch (NoSuchFileException e) {
+                return;
+            } catch (IOException e) {
+                if (depth == 1) {
+                    throw new UncheckedIOException(e);
+                }
+                // Like find, an unreadable subdirectory does not abort the walk.
+                System.err.println("⚠️ Skipping " + directory + ": " + e);
+                return;
+            }
+            new StatTask(this, children, 0, children.size()).invoke();
+        }
+    }
+
+    private static final class StatTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final DirectoryTask parent;
+        private final List<Path> children;
+        private final int from;
+        private final int to;
+
+        StatTask(DirectoryTask parent, List<Path> children, int from, int to) {
+            this.parent = parent;
+            this.children = children;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > STAT_CHUNK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new StatTask(parent, children, from, middle), new StatTask(parent, children, middle, to));
+                return;
+            }
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                Path child = children.get(i);
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    if (parent.depth < parent.maxDepth) {
+                        subdirectories.add(new DirectoryTask(parent.root, child, parent.depth + 1, parent.maxDepth, parent.consumer));
+                    }
+                } else {
+                    parent.consumer.accept(new FileEntry(parent.root.relativize(child).toString(), attributes.size(),
+                            attributes.lastModifiedTime().toMillis()));
+                }
+            }
+            invokeAll(subdirectories);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package dd.project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jcraft.jsch.ChannelShell;
+import com.jcraft.jsch.JSchException;
+
+/**
+ * Keeps one long-lived shell channel per host and feeds it commands framed with
+ * begin/end sentinels, so polling pays a write and a round trip per command instead
+ * of a channel open and a fresh remote process. Commands to the same host run one at
+ * a time; stdout and stderr are demultiplexed back out of the shell's two streams.
+ *
+ * A command that times out cannot be interrupted inside the shell, so its shell is
+ * closed and the next command opens a new one.
+ */
+public final class PersistentShellTransport implements SshTransport {
+
+    private static final int CONNECT_TIMEOUT_MS = Integer.getInteger("ssh.pool.connect.timeout.ms", 15000);
+
+    private final SshSessionPool pool;
+    private final Map<String, RemoteShell> shells = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    private final ScheduledExecutorService timer;
+
+    public PersistentShellTransport(SshSessionPool pool, int threads) {
+        this.pool = pool;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ssh-shell-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ssh-shell-timer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public CompletableFuture<CommandResult> executeAsync(SshTarget target, String command, OutputStream stdoutSink, long timeoutMillis) {
+        return shells.computeIfAbsent(target.key(), key -> new RemoteShell(target)).submit(command, stdoutSink, timeoutMillis);
+    }
+
+    @Override
+    public String name() {
+        return "shell";
+    }
+
+    @Override
+    public void close() {
+        for (RemoteShell shell : shells.values()) {
+            shell.closeChannel();
+        }
+        shells.clear();
+        timer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private final class RemoteShell {
+        private final SshTarget target;
+        private final String markerPrefix = "__DDS_" + Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE) + "_";
+        private CompletableFuture<?> tail = CompletableFuture.completedFuture(null);
+        private int sequence;
+
+        // Only touched from the serial command chain, apart from closeChannel on timeout.
+        private volatile SshSessionPool.Lease lease;
+        private volatile ChannelShell channel;
+        private volatile OutputStream stdin;
+        private volatile SentinelDemux stdout;
+        private volatile SentinelDemux stderr;
+
+        RemoteShell(SshTarget target) {
+            this.target = target;
+        }
+
+        synchronized CompletableFuture<CommandResult> submit(String command, OutputStream sink, long timeoutMillis) {
+            int id = ++sequence;
+            CompletableFuture<CommandResult> result = tail.handle((r, e) -> null)
+                    .thenComposeAsync(ignored -> send(id, command, sink, timeoutMillis), workers);
+            tail = result;
+            return result;
+        }
+
+        private CompletableFuture<CommandResult> send(int id, String command, OutputStream sink, long timeoutMillis) {
+            Pending pending = new Pending(id, command, sink);
+            try {
+                if (channel == null || channel.isClosed()) {
+                    open();
+                }
+                stdout.expect(pending);
+                stderr.expect(pending);
+                String begin = markerPrefix + "BEGIN_" + id + "__";
+                String end = markerPrefix + "END_" + id + "_";
+                // stdin is redirected so a command can never swallow the commands queued behind it.
+                String framed = "echo " + begin + "; echo " + begin + " >&2; ( " + command + " ) </dev/null; rc=$?; "
+                        + "echo; echo " + end + "${rc}__; echo >&2; echo " + end + "${rc}__ >&2\n";
+                stdin.write(framed.getBytes(StandardCharsets.UTF_8));
+                stdin.flush();
+            } catch (JSchException | IOException e) {
+                closeChannel();
+                throw new CompletionException(new IOException("Shell on " + target + " failed: " + e.getMessage(), e));
+            }
+            ScheduledFuture<?> timeout = timer.schedule(() -> {
+                // Close first: completing the future lets the next queued command start.
+                if (!pending.future.isDone()) {
+                    closeChannel();
+                    pending.finish(true);
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            pending.future.whenComplete((r, e) -> timeout.cancel(false));
+            return pending.future;
+        }
+
+        private void open() throws JSchException, IOException {
+            SshSessionPool.Lease acquired = pool.acquire(target);
+            try {
+                ChannelShell shell = (ChannelShell) acquired.session().openChannel("shell");
+                // No pty: no prompt, no echo of our input and no line-discipline rewriting of output.
+                shell.setPty(false);
+                SentinelDemux out = new SentinelDemux(markerPrefix, true);
+                SentinelDemux err = new SentinelDemux(markerPrefix, false);
+                shell.setOutputStream(out, true);
+                shell.setExtOutputStream(err, true);
+                OutputStream in = shell.getOutputStream();
+                shell.connect(CONNECT_TIMEOUT_MS);
+                stdout = out;
+                stderr = err;
+                stdin = in;
+                channel = shell;
+                lease = acquired;
+            } catch (JSchException | IOException e) {
+                acquired.close();
+                throw e;
+            }
+        }
+
+        void closeChannel() {
+            ChannelShell shell = channel;
+            SshSessionPool.Lease held = lease;
+            channel = null;
+            lease = null;
+            if (shell != null) {
+                shell.disconnect();
+            }
+            if (held != null) {
+                held.close();
+            }
+        }
+    }
+
+    /** One framed command waiting for the end sentinel on both streams. */
+    private static final class Pending {
+        final int id;
+        final String command;
+        final OutputStream sink;
+        final ByteArrayOutputStream collected;
+        final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        final CompletableFuture<CommandResult> future = new CompletableFuture<>();
+        final long start = System.nanoTime();
+        boolean stdoutDone;
+        boolean stderrDone;
+        int exitStatus = -1;
+
+        Pending(int id, String command, OutputStream sink) {
+            this.id = id;
+            this.command = command;
+            this.sink = sink;
+            this.collected = sink == null ? new ByteArrayOutputStream() : null;
+        }
+
+        OutputStream target(boolean isStdout) {
+            return isStdout ? (sink != null ? sink : collected) : errors;
+        }
+
+        synchronized void streamDone(boolean isStdout, int rc) {
+            if (isStdout) {
+                stdoutDone = true;
+                exitStatus = rc;
+            } else {
+                stderrDone = true;
+            }
+            if (stdoutDone && stderrDone) {
+                finish(false);
+            }
+        }
+
+        synchronized boolean finish(boolean timedOut) {
+            if (future.isDone()) {
+                return false;
+            }
+            return future.complete(new CommandResult(command,
+                    collected == null ? "" : new String(collected.toByteArray(), StandardCharsets.UTF_8),
+                    new String(errors.toByteArray(), StandardCharsets.UTF_8),
+                    timedOut ? -1 : exitStatus, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), timedOut));
+        }
+    }
+
+    /**
+     * Splits one shell stream into per-command output. Lines starting with the marker
+     * prefix are buffered and parsed as sentinels; every other line is passed through as
+     * it arrives, so long outputs (including NUL-delimited find output) are never held
+     * in memory. The newline written by the blank echo before each end sentinel is
+     * dropped, keeping the command's output byte-exact.
+     */
+    private static final class SentinelDemux extends OutputStream {
+        private enum State { MATCHING, MARKER, PASS }
+
+        private static final int MAX_MARKER_LENGTH = 64;
+
+        private final byte[] prefix;
+        private final boolean isStdout;
+        private final StringBuilder marker = new StringBuilder();
+        private State state = State.MATCHING;
+        private int matched;
+        private boolean pendingNewline;
+        private volatile Pending expected;
+        private Pending active;
+
+        SentinelDemux(String markerPrefix, boolean isStdout) {
+            this.prefix = markerPrefix.getBytes(StandardCharsets.US_ASCII);
+            this.isStdout = isStdout;
+        }
+
+        void expect(Pending pending) {
+            expected = pending;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int end = off + len;
+            int i = off;
+            while (i < end) {
+                if (state == State.PASS) {
+                    int newline = i;
+                    while (newline < end && b[newline] != '\n') {
+                        newline++;
+                    }
+                    forward(b, i, newline - i);
+                    if (newline < end) {
+                        endOfLine();
+                    }
+                    i = newline + 1;
+                    continue;
+                }
+                byte c = b[i++];
+                if (state == State.MARKER) {
+                    if (c == '\n') {
+                        handleMarker(marker.toString());
+                        marker.setLength(0);
+                        state = State.MATCHING;
+                        matched = 0;
+                    } else if (marker.length() < MAX_MARKER_LENGTH) {
+                        marker.append((char) c);
+                    }
+                } else if (c == prefix[matched]) {
+                    if (++matched == prefix.length) {
+                        state = State.MARKER;
+                    }
+                } else {
+                    // Not a sentinel after all: release what was held back and pass the line through.
+                    forward(prefix, 0, matched);
+                    matched = 0;
+                    state = State.PASS;
+                    if (c == '\n') {
+                        endOfLine();
+                    } else {
+                        forward(new byte[] {c}, 0, 1);
+                    }
+                }
+            }
+        }
+
+        private void forward(byte[] b, int off, int len) throws IOException {
+            if (active == null || len == 0) {
+                return;
+            }
+            OutputStream out = active.target(isStdout);
+            if (pendingNewline) {
+                pendingNewline = false;
+                out.write('\n');
+            }
+            out.write(b, off, len);
+        }
+
+        private void endOfLine() throws IOException {
+            if (active != null) {
+                if (pendingNewline) {
+                    active.target(isStdout).write('\n');
+                }
+                pendingNewline = true;
+            }
+            state = State.MATCHING;
+            matched = 0;
+        }
+
+        private void handleMarker(String rest) {
+            Pending pending = expected;
+            if (pending == null) {
+                return;
+            }
+            if (rest.equals("BEGIN_" + pending.id + "__")) {
+                active = pending;
+                pendingNewline = false;
+            } else if (active == pending && rest.startsWith("END_" + pending.id + "_") && rest.endsWith("__")) {
+                String code = rest.substring(("END_" + pending.id + "_").length(), rest.length() - 2);
+                active = null;
+                pendingNewline = false;
+                pending.streamDone(isStdout, isStdout ? Integer.parseInt(code) : -1);
+            }
+        }
+    }
+}
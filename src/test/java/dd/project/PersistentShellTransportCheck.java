@@ -0,0 +1,81 @@
+package dd.project;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Runs commands through PersistentShellTransport against an EmbeddedSshServer and checks
+ * that output, exit codes and timeouts come back per command on the shared shell.
+ */
+public class PersistentShellTransportCheck {
+
+    private static final long TIMEOUT_MS = 10000;
+
+    private EmbeddedSshServer server;
+    private SshSessionPool pool;
+    private PersistentShellTransport transport;
+
+    @BeforeClass
+    public void start() throws Exception {
+        server = new EmbeddedSshServer();
+        pool = new SshSessionPool();
+        transport = new PersistentShellTransport(pool, 2);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stop() throws Exception {
+        transport.close();
+        pool.close();
+        server.close();
+    }
+
+    @Test
+    public void testSentinelLikeOutputPassesThrough() throws Exception {
+        SshTarget target = server.target("sentinels");
+        // Lines that start like a marker, including a forged END for the next command id.
+        String output = "__DD\n__DDS_\n__DDS_0123_END_1_0__\n__DDS_0123_BEGIN_2__\nlast line without newline";
+        CommandResult result = run(target, "printf '%s' '" + output + "'");
+        Assert.assertEquals(result.getStdout(), output);
+        Assert.assertEquals(result.getExitStatus(), 0);
+
+        // The shell is still in step afterwards.
+        Assert.assertEquals(run(target, "echo next").getStdout(), "next\n");
+    }
+
+    @Test
+    public void testNonZeroExitCodes() throws Exception {
+        SshTarget target = server.target("exit-codes");
+        CommandResult failed = run(target, "echo partial; echo broken >&2; exit 3");
+        Assert.assertEquals(failed.getExitStatus(), 3);
+        Assert.assertEquals(failed.getStdout(), "partial\n");
+        Assert.assertEquals(failed.getStderr(), "broken\n");
+        Assert.assertFalse(failed.isSuccess());
+
+        Assert.assertEquals(run(target, "false").getExitStatus(), 1);
+        // exit only leaves the command's subshell, not the persistent shell.
+        CommandResult ok = run(target, "echo fine");
+        Assert.assertEquals(ok.getExitStatus(), 0);
+        Assert.assertEquals(ok.getStdout(), "fine\n");
+    }
+
+    @Test
+    public void testTimeoutThenNewCommand() throws Exception {
+        SshTarget target = server.target("timeouts");
+        CommandResult slow = transport.executeAsync(target, "sleep 5; echo late", null, 300).get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(slow.isTimedOut());
+        Assert.assertEquals(slow.getExitStatus(), -1);
+
+        CommandResult next = run(target, "echo after");
+        Assert.assertFalse(next.isTimedOut());
+        Assert.assertEquals(next.getExitStatus(), 0);
+        Assert.assertEquals(next.getStdout(), "after\n", "no output from the timed-out command leaks into the next one");
+    }
+
+    private CommandResult run(SshTarget target, String command) throws Exception {
+        return transport.executeAsync(target, command, null, TIMEOUT_MS).get(TIMEOUT_MS * 2, TimeUnit.MILLISECONDS);
+    }
+}
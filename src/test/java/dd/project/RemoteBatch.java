@@ -0,0 +1,160 @@
+package dd.project;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Folds all pending queries for one host into a single exec. Each query's stdout
+ * and stderr are wrapped in sentinel lines carrying its exit code, and the combined
+ * output is split back into one CommandResult per query.
+ */
+public class RemoteBatch {
+
+    public enum Kind { DF, LISTING, RAW }
+
+    private final String nonce = Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+    private final List<Query> queries = new ArrayList<>();
+
+    /** Byte and inode counts for a mount in one line; parse with StorageOutputParser.forDfBytes. */
+    public Query df(String mount) {
+        return add(Kind.DF, mount, StorageSnapshot.DF_COMMAND + " " + quote(mount));
+    }
+
+    /** Every direct entry of the directory; parse with StorageOutputParser.forFind. */
+    public Query listing(String directory) {
+        return add(Kind.LISTING, directory, new RemoteFileFilter().findCommand(directory));
+    }
+
+    public Query raw(String command) {
+        return add(Kind.RAW, null, command);
+    }
+
+    private Query add(Kind kind, String path, String command) {
+        Query query = new Query(queries.size(), kind, path, command);
+        queries.add(query);
+        return query;
+    }
+
+    public List<Query> getQueries() {
+        return Collections.unmodifiableList(queries);
+    }
+
+    public boolean isEmpty() {
+        return queries.isEmpty();
+    }
+
+    /**
+     * The single shell script that runs every query in order.
+     */
+    public String script() {
+        StringBuilder script = new StringBuilder();
+        for (Query query : queries) {
+            String begin = beginMarker(query.index);
+            String end = endPrefix(query.index);
+            script.append("echo ").append(begin).append("; echo ").append(begin).append(" >&2; ")
+                    .append("( ").append(query.command).append(" ); rc=$?; ")
+                    .append("echo; echo ").append(end).append("${rc}__; ")
+                    .append("echo >&2; echo ").append(end).append("${rc}__ >&2; ");
+        }
+        return script.toString();
+    }
+
+    public List<CommandResult> execute(SshTransport transport, SshTarget target, long timeoutMillis) throws IOException {
+        return split(transport.execute(target, script(), timeoutMillis));
+    }
+
+    public CompletableFuture<List<CommandResult>> executeAsync(SshTransport transport, SshTarget target, long timeoutMillis) {
+        return transport.executeAsync(target, script(), null, timeoutMillis).thenApply(this::split);
+    }
+
+    /**
+     * Splits the combined output back into per-query results. Queries whose end marker
+     * never arrived (e.g. the batch timed out) get exit status -1.
+     */
+    public List<CommandResult> split(CommandResult combined) {
+        List<CommandResult> results = new ArrayList<>(queries.size());
+        for (Query query : queries) {
+            Section out = section(combined.getStdout(), query.index);
+            Section err = section(combined.getStderr(), query.index);
+            boolean incomplete = out.exitStatus < 0;
+            results.add(new CommandResult(query.command, out.text, err.text, out.exitStatus,
+                    combined.getElapsedMillis(), combined.isTimedOut() && incomplete));
+        }
+        return results;
+    }
+
+    private Section section(String output, int index) {
+        String begin = beginMarker(index) + "\n";
+        int start = output.indexOf(begin);
+        if (start < 0) {
+            return new Section("", -1);
+        }
+        start += begin.length();
+        String endPrefix = "\n" + endPrefix(index);
+        int end = output.indexOf(endPrefix, start);
+        if (end < 0) {
+            return new Section(output.substring(start), -1);
+        }
+        int codeStart = end + endPrefix.length();
+        int codeEnd = output.indexOf("__", codeStart);
+        int exitStatus = codeEnd < 0 ? -1 : Integer.parseInt(output.substring(codeStart, codeEnd));
+        // The search prefix starts at the newline of the blank echo, so it is excluded here.
+        return new Section(output.substring(start, end), exitStatus);
+    }
+
+    private String beginMarker(int index) {
+        return "__DDB_" + nonce + "_BEGIN_" + index + "__";
+    }
+
+    private String endPrefix(int index) {
+        return "__DDB_" + nonce + "_END_" + index + "_";
+    }
+
+    static String quote(String value) {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+
+    private static final class Section {
+        final String text;
+        final int exitStatus;
+
+        Section(String text, int exitStatus) {
+            this.text = text;
+            this.exitStatus = exitStatus;
+        }
+    }
+
+    public static final class Query {
+        private final int index;
+        private final Kind kind;
+        private final String path;
+        private final String command;
+
+        private Query(int index, Kind kind, String path, String command) {
+            this.index = index;
+            this.kind = kind;
+            this.path = path;
+            this.command = command;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package dd.project;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Age/size predicate over directory entries that compiles to a {@code find}
+ * expression, so only matching entries are sent back from the host. The same
+ * predicate can be evaluated locally against entries that are already in memory.
+ * Time cutoffs are whole seconds and {@code -newermt} semantics apply on both sides:
+ * "before" includes an entry modified exactly at the cutoff, "after" excludes it.
+ */
+public class RemoteFileFilter {
+
+    private final List<String> expressions = new ArrayList<>();
+    private long modifiedBeforeMillis = Long.MAX_VALUE;
+    private long modifiedAfterMillis = Long.MIN_VALUE;
+    private long minSizeBytes = 0;
+    private long maxSizeBytes = Long.MAX_VALUE;
+
+    /** Entries last modified no later than local midnight starting {@code day}, e.g. "not from today". */
+    public RemoteFileFilter modifiedBefore(LocalDate day) {
+        modifiedBeforeMillis = Math.min(modifiedBeforeMillis, day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        expressions.add("! -newermt " + RemoteBatch.quote(day.format(DateTimeFormatter.ISO_LOCAL_DATE)));
+        return this;
+    }
+
+    public RemoteFileFilter modifiedBefore(Instant cutoff) {
+        modifiedBeforeMillis = Math.min(modifiedBeforeMillis, cutoff.getEpochSecond() * 1000);
+        expressions.add("! -newermt @" + cutoff.getEpochSecond());
+        return this;
+    }
+
+    public RemoteFileFilter modifiedAfter(Instant cutoff) {
+        modifiedAfterMillis = Math.max(modifiedAfterMillis, cutoff.getEpochSecond() * 1000);
+        expressions.add("-newermt @" + cutoff.getEpochSecond());
+        return this;
+    }
+
+    public RemoteFileFilter olderThanDays(int days) {
+        return modifiedBefore(Instant.now().minusSeconds(days * 86400L));
+    }
+
+    public RemoteFileFilter minSize(long bytes) {
+        minSizeBytes = Math.max(minSizeBytes, bytes);
+        if (bytes > 0) {
+            expressions.add("-size +" + (bytes - 1) + "c");
+        }
+        return this;
+    }
+
+    public RemoteFileFilter maxSize(long bytes) {
+        maxSizeBytes = Math.min(maxSizeBytes, bytes);
+        expressions.add("-size -" + (bytes + 1) + "c");
+        return this;
+    }
+
+    /**
+     * {@code find} over the direct, non-directory children of {@code directory} printing
+     * matches in StorageOutputParser's NUL-separated find format.
+     */
+    public String findCommand(String directory) {
+        StringBuilder command = new StringBuilder("find ").append(RemoteBatch.quote(directory))
+                .append(" -mindepth 1 -maxdepth 1 ! -type d");
+        for (String expression : expressions) {
+            command.append(' ').append(expression);
+        }
+        return command.append(" -printf '").append(StorageOutputParser.FIND_FORMAT).append('\'').toString();
+    }
+
+    public boolean matches(FileEntry entry) {
+        long mtime = entry.getMtimeMillis();
+        long size = entry.getSizeBytes();
+        // "! -newermt" keeps mtime <= cutoff, "-newermt" keeps mtime > cutoff.
+        return mtime <= modifiedBeforeMillis && mtime > modifiedAfterMillis && size >= minSizeBytes && size <= maxSizeBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" ", expressions);
+    }
+}
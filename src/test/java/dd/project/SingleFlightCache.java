@@ -0,0 +1,123 @@
+package dd.project;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Shares one execution per key: callers arriving while it runs join it, and callers
+ * arriving within the TTL after it completed get its value without running anything.
+ * Failed executions and values rejected by the {@code cacheable} predicate are still
+ * shared with callers that joined in flight, but are not kept afterwards.
+ */
+public class SingleFlightCache<K, V> {
+
+    private final long ttlNanos;
+    private final Predicate<V> cacheable;
+    private final Map<K, Flight<V>> flights = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong joins = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong savedNanos = new AtomicLong();
+
+    public SingleFlightCache(long ttlMillis, Predicate<V> cacheable) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.cacheable = cacheable;
+    }
+
+    public CompletableFuture<V> get(K key, Supplier<CompletableFuture<V>> loader) {
+        while (true) {
+            long now = System.nanoTime();
+            Flight<V> flight = flights.get(key);
+            if (flight != null) {
+                if (!flight.future.isDone()) {
+                    // Credited with the part of the execution that already ran before we arrived.
+                    joins.incrementAndGet();
+                    savedNanos.addAndGet(now - flight.startNanos);
+                    return flight.future;
+                }
+                if (now - flight.expiresAtNanos < 0) {
+                    hits.incrementAndGet();
+                    savedNanos.addAndGet(flight.costNanos);
+                    return flight.future;
+                }
+                flights.remove(key, flight);
+                continue;
+            }
+            Flight<V> created = new Flight<>(now);
+            if (flights.putIfAbsent(key, created) != null) {
+                continue;
+            }
+            misses.incrementAndGet();
+            CompletableFuture<V> loaded;
+            try {
+                loaded = loader.get();
+            } catch (RuntimeException e) {
+                loaded = new CompletableFuture<>();
+                loaded.completeExceptionally(e);
+            }
+            loaded.whenComplete((value, error) -> {
+                long done = System.nanoTime();
+                created.costNanos = done - created.startNanos;
+                created.expiresAtNanos = done + ttlNanos;
+                if (error != null || !cacheable.test(value)) {
+                    flights.remove(key, created);
+                }
+                if (error != null) {
+                    created.future.completeExceptionally(error);
+                } else {
+                    created.future.complete(value);
+                }
+            });
+            return created.future;
+        }
+    }
+
+    public void invalidate(K key) {
+        flights.remove(key);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getJoins() {
+        return joins.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** Share of lookups, cached or joined in flight, that did not start an execution. */
+    public double getHitRatio() {
+        long shared = hits.get() + joins.get();
+        long total = shared + misses.get();
+        return total == 0 ? 0 : (double) shared / total;
+    }
+
+    public long getSavedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(savedNanos.get());
+    }
+
+    public String metricsSummary() {
+        return String.format("hits=%d joins=%d misses=%d hitRatio=%.0f%% saved=%dms",
+                getHits(), getJoins(), getMisses(), getHitRatio() * 100, getSavedMillis());
+    }
+
+    private static final class Flight<V> {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final long startNanos;
+        volatile long costNanos;
+        volatile long expiresAtNanos;
+
+        Flight(long startNanos) {
+            this.startNanos = startNanos;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package dd.project;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * What changed in a directory between two scans: added, removed and size-changed entries.
+ * Both scans are CompactFileIndexes in path order, so the diff is one merge pass, linear
+ * in the two listings, and only the deltas become objects.
+ *
+ * {@link #track} persists each scan's index under {@code storage.state.dir} so the next
+ * run of the same check diffs against it; alerts can then mail what is new instead of
+ * the whole listing again.
+ */
+public final class SnapshotDiff {
+
+    public static final int REPORT_LIMIT = Integer.getInteger("storage.diff.report.limit", 50);
+
+    private static final Path STATE_DIR =
+            Paths.get(System.getProperty("storage.state.dir", System.getProperty("user.home") + "/.dd-storage"));
+
+    private SnapshotDiff() {
+    }
+
+    public interface Listener {
+        void added(FileEntry entry);
+
+        void removed(FileEntry entry);
+
+        void changed(FileEntry before, FileEntry after);
+    }
+
+    public static void diff(CompactFileIndex previous, CompactFileIndex current, Listener listener) {
+        CompactFileIndex.Cursor before = previous.cursor();
+        CompactFileIndex.Cursor after = current.cursor();
+        boolean hasBefore = before.next();
+        boolean hasAfter = after.next();
+        while (hasBefore || hasAfter) {
+            int c = !hasBefore ? 1 : !hasAfter ? -1 : CompactFileIndex.compare(before, after);
+            if (c < 0) {
+                listener.removed(before.entry());
+                hasBefore = before.next();
+            } else if (c > 0) {
+                listener.added(after.entry());
+                hasAfter = after.next();
+            } else {
+                if (before.getSizeBytes() != after.getSizeBytes()) {
+                    listener.changed(before.entry(), after.entry());
+                }
+                hasBefore = before.next();
+                hasAfter = after.next();
+            }
+        }
+    }
+
+    /** Collects one scan of {@code directory} on {@code target}; see {@link Tracker#finish()}. */
+    public static Tracker track(SshTarget target, String directory) {
+        String name = (target.key() + directory).replaceAll("[^A-Za-z0-9._-]", "_");
+        return new Tracker(STATE_DIR.resolve(name + ".index"));
+    }
+
+    /**
+     * Takes the entries of one scan in any order (sorted with bounded heap through
+     * ExternalFileEntrySorter). Only call {@link #finish()} once the scan completed, so a
+     * failed listing never replaces the previous snapshot.
+     */
+    public static final class Tracker implements Consumer<FileEntry>, AutoCloseable {
+        private final Path stateFile;
+        private final ExternalFileEntrySorter sorter = new ExternalFileEntrySorter(CompactFileIndex.ENTRY_PATH_ORDER);
+
+        Tracker(Path stateFile) {
+            this.stateFile = stateFile;
+        }
+
+        @Override
+        public void accept(FileEntry entry) {
+            sorter.accept(entry);
+        }
+
+        /** Diffs this scan against the previous one and saves it as the new baseline. */
+        public Report finish() throws IOException {
+            CompactFileIndex.Builder builder = new CompactFileIndex.Builder();
+            String[] last = {null};
+            sorter.forEachSorted(entry -> {
+                if (!entry.getPath().equals(last[0])) {
+                    builder.add(entry);
+                    last[0] = entry.getPath();
+                }
+            });
+            CompactFileIndex current = builder.build();
+            CompactFileIndex previous = null;
+            if (Files.exists(stateFile)) {
+                try {
+                    previous = CompactFileIndex.load(stateFile);
+                } catch (IOException e) {
+                    System.out.println("⚠️ Ignoring unreadable snapshot " + stateFile + ": " + e.getMessage());
+                }
+            }
+            Report report = new Report(previous == null);
+            diff(previous == null ? new CompactFileIndex.Builder().build() : previous, current, report);
+            current.save(stateFile);
+            return report;
+        }
+
+        @Override
+        public void close() throws IOException {
+            sorter.close();
+        }
+    }
+
+    /** Counts of every delta, with the first {@link #REPORT_LIMIT} of each kind kept for display. */
+    public static final class Report implements Listener {
+        private final boolean firstScan;
+        private final List<FileEntry> added = new ArrayList<>();
+        private final List<FileEntry> removed = new ArrayList<>();
+        private final List<FileEntry[]> changed = new ArrayList<>();
+        private long addedCount;
+        private long addedBytes;
+        private long removedCount;
+        private long removedBytes;
+        private long changedCount;
+        private long growthBytes;
+
+        Report(boolean firstScan) {
+            this.firstScan = firstScan;
+        }
+
+        @Override
+        public void added(FileEntry entry) {
+            addedCount++;
+            addedBytes += entry.getSizeBytes();
+            if (added.size() < REPORT_LIMIT) {
+                added.add(entry);
+            }
+        }
+
+        @Override
+        public void removed(FileEntry entry) {
+            removedCount++;
+            removedBytes += entry.getSizeBytes();
+            if (removed.size() < REPORT_LIMIT) {
+                removed.add(entry);
+            }
+        }
+
+        @Override
+        public void changed(FileEntry before, FileEntry after) {
+            changedCount++;
+            growthBytes += after.getSizeBytes() - before.getSizeBytes();
+            if (changed.size() < REPORT_LIMIT) {
+                changed.add(new FileEntry[] {before, after});
+            }
+        }
+
+        /** True when there was no previous snapshot, so everything counts as added. */
+        public boolean isFirstScan() {
+            return firstScan;
+        }
+
+        public boolean hasAdditionsOrChanges() {
+            return addedCount > 0 || changedCount > 0;
+        }
+
+        public long getAddedCount() {
+            return addedCount;
+        }
+
+        public long getRemovedCount() {
+            return removedCount;
+        }
+
+        public long getChangedCount() {
+            return changedCount;
+        }
+
+        @Override
+        public String toString() {
+            return (firstScan ? "First scan: " : "Since last scan: ") + addedCount + " added (" + StorageSnapshot.humanBytes(addedBytes)
+                    + "), " + removedCount + " removed (" + StorageSnapshot.humanBytes(removedBytes) + "), " + changedCount
+                    + " changed size (" + (growthBytes < 0 ? "-" : "+") + StorageSnapshot.humanBytes(Math.abs(growthBytes)) + ")";
+        }
+
+        public String toHtml() {
+            StringBuilder html = new StringBuilder("<p><b>").append(escape(toString())).append("</b></p>");
+            if (!firstScan) {
+                list(html, "New", added, addedCount);
+                if (!changed.isEmpty()) {
+                    html.append("<p><b>Changed size:</b></p><pre>");
+                    for (FileEntry[] change : changed) {
+                        html.append(String.format("%8s → %8s  ", StorageSnapshot.humanBytes(change[0].getSizeBytes()),
+                                StorageSnapshot.humanBytes(change[1].getSizeBytes()))).append(escape(change[1].getPath())).append("\n");
+                    }
+                    more(html, changedCount - changed.size());
+                    html.append("</pre>");
+                }
+                list(html, "Removed", removed, removedCount);
+            }
+            return html.toString();
+        }
+
+        private static void list(StringBuilder html, String title, List<FileEntry> entries, long total) {
+            if (entries.isEmpty()) {
+                return;
+            }
+            html.append("<p><b>").append(title).append(":</b></p><pre>");
+            for (FileEntry entry : entries) {
+                html.append(String.format("%tF  %8s  ", entry.getMtimeMillis(), StorageSnapshot.humanBytes(entry.getSizeBytes())))
+                        .append(escape(entry.getPath())).append("\n");
+            }
+            more(html, total - entries.size());
+            html.append("</pre>");
+        }
+
+        private static void more(StringBuilder html, long hidden) {
+            if (hidden > 0) {
+                html.append("… and ").append(hidden).append(" more\n");
+            }
+        }
+
+        private static String escape(String text) {
+            return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+        }
+    }
+}
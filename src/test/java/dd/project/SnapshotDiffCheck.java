@@ -0,0 +1,125 @@
+package dd.project;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Tracks old-file listings of a temp directory through an EmbeddedSshServer, the way the
+ * postImageProcessor scanners do, and checks that a listing that fails or times out
+ * partway leaves the saved snapshot alone.
+ */
+public class SnapshotDiffCheck {
+
+    private EmbeddedSshServer server;
+    private SshSessionPool pool;
+    private SshTransport transport;
+    private Path directory;
+    private Path state;
+    private final RemoteFileFilter oldFiles = new RemoteFileFilter().modifiedBefore(LocalDate.now());
+
+    @BeforeClass
+    public void start() throws Exception {
+        server = new EmbeddedSshServer();
+        pool = new SshSessionPool();
+        transport = new JschSshTransport(pool, 2);
+        directory = Files.createTempDirectory("dd-old-files");
+        state = Files.createTempDirectory("dd-old-files-state");
+        for (int i = 0; i < 5; i++) {
+            Path file = directory.resolve("scan_" + i + ".jp2");
+            Files.write(file, "data".getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(1_700_000_000_000L + i * 1000L));
+        }
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stop() throws Exception {
+        transport.close();
+        pool.close();
+        server.close();
+        for (Path root : new Path[] {directory, state}) {
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void testFailedListingKeepsPreviousSnapshot() throws IOException {
+        // find lists every file, then the command fails.
+        checkKeepsPreviousSnapshot("failed", new FaultyTransport(transport, "; false", SshTransport.DEFAULT_TIMEOUT_MS));
+    }
+
+    @Test
+    public void testTimedOutListingKeepsPreviousSnapshot() throws IOException {
+        checkKeepsPreviousSnapshot("timed-out", new FaultyTransport(transport, "; sleep 10", 1000));
+    }
+
+    private void checkKeepsPreviousSnapshot(String name, SshTransport faulty) throws IOException {
+        Path stateFile = state.resolve(name + ".index");
+        SshTarget target = server.target("old-files");
+        Assert.assertEquals(scan(stateFile, new SshStorageProbe(target, transport)).getAddedCount(), 5);
+        byte[] saved = Files.readAllBytes(stateFile);
+
+        Files.delete(directory.resolve("scan_4.jp2"));
+        try {
+            scan(stateFile, new SshStorageProbe(target, faulty));
+            Assert.fail("a " + name + " listing should throw");
+        } catch (IOException expected) {
+            // The scanners stop here too, before finish().
+        }
+        Assert.assertEquals(Files.readAllBytes(stateFile), saved, "the " + name + " listing replaced the snapshot");
+
+        Files.write(directory.resolve("scan_4.jp2"), "data".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(directory.resolve("scan_4.jp2"), FileTime.fromMillis(1_700_000_004_000L));
+        SnapshotDiff.Report next = scan(stateFile, new SshStorageProbe(target, transport));
+        Assert.assertFalse(next.hasAdditionsOrChanges(), "nothing is new since the last complete listing: " + next);
+        Assert.assertEquals(next.getRemovedCount(), 0);
+    }
+
+    private SnapshotDiff.Report scan(Path stateFile, StorageProbe probe) throws IOException {
+        try (SnapshotDiff.Tracker changes = new SnapshotDiff.Tracker(stateFile)) {
+            probe.forEachEntry(directory.toString(), oldFiles, changes);
+            return changes.finish();
+        }
+    }
+
+    /** Appends {@code suffix} to every command and runs it with {@code timeoutMillis}. */
+    private static final class FaultyTransport implements SshTransport {
+        private final SshTransport delegate;
+        private final String suffix;
+        private final long timeoutMillis;
+
+        FaultyTransport(SshTransport delegate, String suffix, long timeoutMillis) {
+            this.delegate = delegate;
+            this.suffix = suffix;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public CompletableFuture<CommandResult> executeAsync(SshTarget host, String command, OutputStream stdoutSink, long timeoutMillis) {
+            return delegate.executeAsync(host, command + suffix, stdoutSink, this.timeoutMillis);
+        }
+
+        @Override
+        public String name() {
+            return "faulty";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package dd.project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+
+/**
+ * Runs one command over an exec channel and blocks on the output stream
+ * until the remote side closes it, instead of polling available() with sleeps.
+ */
+public final class SshCommandRunner {
+
+    private static final long DEFAULT_TIMEOUT_MS = Long.getLong("ssh.command.timeout.ms", 60000L);
+    private static final int BUFFER_SIZE = 8192;
+
+    // Disconnects channels that overrun their timeout; a disconnect unblocks the pending read.
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ssh-command-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private SshCommandRunner() {
+    }
+
+    public static CommandResult run(Session session, String command) throws JSchException, IOException {
+        return run(session, command, DEFAULT_TIMEOUT_MS);
+    }
+
+    public static CommandResult run(Session session, String command, long timeoutMillis) throws JSchException, IOException {
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        CommandResult streamed = run(session, command, stdout, timeoutMillis);
+        return new CommandResult(command, new String(stdout.toByteArray(), StandardCharsets.UTF_8), streamed.getStderr(),
+                streamed.getExitStatus(), streamed.getElapsedMillis(), streamed.isTimedOut());
+    }
+
+    /**
+     * Streams stdout into {@code stdoutSink} as it arrives; the returned result carries an empty stdout.
+     */
+    public static CommandResult run(Session session, String command, OutputStream stdoutSink, long timeoutMillis)
+            throws JSchException, IOException {
+        long start = System.nanoTime();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        AtomicBoolean timedOut = new AtomicBoolean(false);
+
+        ChannelExec channel = (ChannelExec) session.openChannel("exec");
+        channel.setCommand(command);
+        channel.setInputStream(null);
+        channel.setErrStream(stderr, true);
+        InputStream in = channel.getInputStream();
+        channel.connect();
+
+        ScheduledFuture<?> watchdog = WATCHDOG.schedule(() -> {
+            timedOut.set(true);
+            channel.disconnect();
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                stdoutSink.write(buffer, 0, n);
+            }
+            awaitExitStatus(channel, start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        } catch (IOException e) {
+            // A watchdog disconnect surfaces as "Pipe closed"; anything else is a real failure.
+            if (!timedOut.get()) {
+                throw e;
+            }
+        } finally {
+            watchdog.cancel(false);
+            channel.disconnect();
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new CommandResult(command, "", new String(stderr.toByteArray(), StandardCharsets.UTF_8),
+                channel.getExitStatus(), elapsedMillis, timedOut.get());
+    }
+
+    // OpenSSH sends exit-status right after EOF, so this normally returns within a millisecond or two.
+    private static void awaitExitStatus(ChannelExec channel, long deadlineNanos) {
+        long pauseMillis = 1;
+        while (channel.getExitStatus() < 0 && !channel.isClosed() && System.nanoTime() < deadlineNanos) {
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            pauseMillis = Math.min(pauseMillis * 2, 50);
+        }
+    }
+}
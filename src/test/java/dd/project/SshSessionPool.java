@@ -0,0 +1,281 @@
+package dd.project;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+
+/**
+ * Keeps logged-in JSch sessions per user@host:port so repeated probes pay one
+ * channel open instead of a TCP + key exchange + auth handshake.
+ */
+public final class SshSessionPool implements AutoCloseable {
+
+    // OpenSSH's default MaxSessions is 10 channels per connection.
+    private static final int MAX_CHANNELS_PER_SESSION = Integer.getInteger("ssh.pool.max.channels", 10);
+    private static final long IDLE_TIMEOUT_MS = Long.getLong("ssh.pool.idle.ms", TimeUnit.MINUTES.toMillis(5));
+    private static final int KEEPALIVE_MS = Integer.getInteger("ssh.pool.keepalive.ms", 30000);
+    private static final int CONNECT_TIMEOUT_MS = Integer.getInteger("ssh.pool.connect.timeout.ms", 15000);
+    private static final long COMMAND_TIMEOUT_MS = Long.getLong("ssh.command.timeout.ms", 60000L);
+
+    private static final SshSessionPool SHARED = new SshSessionPool();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(SHARED::close, "ssh-pool-shutdown"));
+    }
+
+    private final JSch jsch = new JSch();
+    private final Map<String, List<PooledSession>> sessions = new HashMap<>();
+    private final ScheduledExecutorService evictor;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong handshakes = new AtomicLong();
+    private final AtomicLong handshakeNanos = new AtomicLong();
+
+    public SshSessionPool() {
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ssh-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, IDLE_TIMEOUT_MS / 4);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public static SshSessionPool shared() {
+        return SHARED;
+    }
+
+    public CommandResult execute(SshTarget target, String command) throws JSchException, IOException {
+        return execute(target, command, COMMAND_TIMEOUT_MS);
+    }
+
+    public CommandResult execute(SshTarget target, String command, OutputStream stdoutSink) throws JSchException, IOException {
+        return execute(target, command, stdoutSink, COMMAND_TIMEOUT_MS);
+    }
+
+    public CommandResult execute(SshTarget target, String command, long timeoutMillis) throws JSchException, IOException {
+        return execute(target, command, null, timeoutMillis);
+    }
+
+    /**
+     * Runs a command on a pooled session, retrying once on a fresh session if the
+     * pooled one turns out to be dead. With a non-null sink stdout is streamed into it.
+     */
+    public CommandResult execute(SshTarget target, String command, OutputStream stdoutSink, long timeoutMillis)
+            throws JSchException, IOException {
+        for (int attempt = 0; ; attempt++) {
+            Lease lease = acquire(target);
+            try {
+                return stdoutSink == null
+                        ? SshCommandRunner.run(lease.session(), command, timeoutMillis)
+                        : SshCommandRunner.run(lease.session(), command, stdoutSink, timeoutMillis);
+            } catch (JSchException e) {
+                lease.invalidate();
+                if (attempt > 0 || lease.fresh) {
+                    throw e;
+                }
+                System.out.println("⚠️ Pooled session to " + target + " is broken, reconnecting: " + e.getMessage());
+            } finally {
+                lease.close();
+            }
+        }
+    }
+
+    public Lease acquire(SshTarget target) throws JSchException {
+        synchronized (this) {
+            List<PooledSession> list = sessions.get(target.key());
+            if (list != null) {
+                for (PooledSession pooled : list) {
+                    if (pooled.session.isConnected() && pooled.channels < MAX_CHANNELS_PER_SESSION) {
+                        pooled.channels++;
+                        hits.incrementAndGet();
+                        return new Lease(target.key(), pooled, false);
+                    }
+                }
+            }
+        }
+
+        // Handshake outside the lock so slow hosts do not hold up the rest of the fleet.
+        misses.incrementAndGet();
+        PooledSession pooled = new PooledSession(connect(target));
+        pooled.channels = 1;
+        synchronized (this) {
+            sessions.computeIfAbsent(target.key(), k -> new ArrayList<>()).add(pooled);
+        }
+        return new Lease(target.key(), pooled, true);
+    }
+
+    private Session connect(SshTarget target) throws JSchException {
+        long start = System.nanoTime();
+        Session session = jsch.getSession(target.getUser(), target.getHost(), target.getPort());
+        session.setPassword(target.getPassword());
+        session.setConfig("StrictHostKeyChecking", "no");
+        session.setDaemonThread(true);
+        session.setServerAliveInterval(KEEPALIVE_MS);
+        session.setServerAliveCountMax(3);
+        session.connect(CONNECT_TIMEOUT_MS);
+        handshakes.incrementAndGet();
+        handshakeNanos.addAndGet(System.nanoTime() - start);
+        return session;
+    }
+
+    /**
+     * Disconnects sessions that are broken or have had no channel open for the idle timeout.
+     */
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        List<Session> doomed = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<List<PooledSession>> lists = sessions.values().iterator(); lists.hasNext(); ) {
+                List<PooledSession> list = lists.next();
+                for (Iterator<PooledSession> it = list.iterator(); it.hasNext(); ) {
+                    PooledSession pooled = it.next();
+                    boolean broken = !pooled.session.isConnected();
+                    boolean idle = pooled.channels == 0 && now - pooled.lastUsed > IDLE_TIMEOUT_MS;
+                    if (broken || idle) {
+                        it.remove();
+                        doomed.add(pooled.session);
+                    }
+                }
+                if (list.isEmpty()) {
+                    lists.remove();
+                }
+            }
+        }
+        for (Session session : doomed) {
+            session.disconnect();
+            evictions.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void close() {
+        evictor.shutdownNow();
+        List<Session> all = new ArrayList<>();
+        synchronized (this) {
+            for (List<PooledSession> list : sessions.values()) {
+                for (PooledSession pooled : list) {
+                    all.add(pooled.session);
+                }
+            }
+            sessions.clear();
+        }
+        for (Session session : all) {
+            session.disconnect();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getHandshakes() {
+        return handshakes.get();
+    }
+
+    public double getAverageHandshakeMillis() {
+        long count = handshakes.get();
+        return count == 0 ? 0 : handshakeNanos.get() / 1e6 / count;
+    }
+
+    public synchronized int getOpenSessions() {
+        int open = 0;
+        for (List<PooledSession> list : sessions.values()) {
+            open += list.size();
+        }
+        return open;
+    }
+
+    public String metricsSummary() {
+        return String.format("SSH pool: hits=%d misses=%d handshakes=%d avgHandshake=%.1fms evictions=%d open=%d",
+                getHits(), getMisses(), getHandshakes(), getAverageHandshakeMillis(), getEvictions(), getOpenSessions());
+    }
+
+    private static final class PooledSession {
+        final Session session;
+        int channels;
+        long lastUsed = System.currentTimeMillis();
+        // Out of the pool; disconnected once the last lease on it closes.
+        boolean invalidated;
+
+        PooledSession(Session session) {
+            this.session = session;
+        }
+    }
+
+    /**
+     * One reserved channel slot on a pooled session; close it to hand the slot back.
+     */
+    public final class Lease implements AutoCloseable {
+        private final String key;
+        private final PooledSession pooled;
+        private final boolean fresh;
+        private boolean released;
+
+        private Lease(String key, PooledSession pooled, boolean fresh) {
+            this.key = key;
+            this.pooled = pooled;
+            this.fresh = fresh;
+        }
+
+        public Session session() {
+            return pooled.session;
+        }
+
+        /**
+         * Drops the underlying session from the pool, e.g. after a channel open failure.
+         * Other leases may still be running commands on it, so it is only disconnected
+         * once the last of them closes, or right away if it is already dead.
+         */
+        public void invalidate() {
+            synchronized (SshSessionPool.this) {
+                pooled.invalidated = true;
+                List<PooledSession> list = sessions.get(key);
+                if (list != null && list.remove(pooled) && list.isEmpty()) {
+                    sessions.remove(key);
+                }
+            }
+            if (!pooled.session.isConnected()) {
+                pooled.session.disconnect();
+            }
+        }
+
+        @Override
+        public void close() {
+            boolean disconnect = false;
+            synchronized (SshSessionPool.this) {
+                if (!released) {
+                    released = true;
+                    pooled.channels--;
+                    pooled.lastUsed = System.currentTimeMillis();
+                    disconnect = pooled.invalidated && pooled.channels == 0;
+                }
+            }
+            if (disconnect) {
+                pooled.session.disconnect();
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package dd.project;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Runs df and a filtered find on the host, parsing the output as it streams in.
+ */
+public class SshStorageProbe implements StorageProbe {
+
+    private static final SingleFlightCache<String, List<StorageSnapshot>> CAPACITY =
+            new SingleFlightCache<>(SshTransports.CACHE_TTL_MS, rows -> true);
+
+    private final SshTarget target;
+    private final SshTransport transport;
+
+    public SshStorageProbe(SshTarget target, SshTransport transport) {
+        this.target = target;
+        this.transport = transport;
+    }
+
+    /**
+     * Parsed df rows, shared by every probe asking for the same host and mount within
+     * the cache TTL, whichever user it logs in as. Each remote run is also appended to the usage history.
+     */
+    @Override
+    public List<StorageSnapshot> capacity(String mount) throws IOException {
+        String command = StorageSnapshot.DF_COMMAND + " " + RemoteBatch.quote(mount);
+        return SshTransport.await(CAPACITY.get(target.hostKey() + "\n" + command, () -> {
+            List<StorageSnapshot> rows = new ArrayList<>();
+            StorageOutputParser parser = StorageOutputParser.forDfBytes(rows::add);
+            return transport.executeAsync(target, command, parser, SshTransport.DEFAULT_TIMEOUT_MS).thenApply(result -> {
+                parser.close();
+                System.err.print(result.getStderr());
+                if (!result.isSuccess()) {
+                    throw new CompletionException(new IOException("df on " + target + " failed: " + result));
+                }
+                UsageHistoryStore.record(target.getHost(), rows);
+                return Collections.unmodifiableList(rows);
+            });
+        }), "df on " + target);
+    }
+
+    /** The df cache shared by all probes; df is streamed into a parser, so this is its only cache layer. */
+    static SingleFlightCache<String, List<StorageSnapshot>> getCapacityCache() {
+        return CAPACITY;
+    }
+
+    @Override
+    public void forEachEntry(String directory, RemoteFileFilter filter, Consumer<FileEntry> consumer) throws IOException {
+        StorageOutputParser parser = StorageOutputParser.forFind(consumer);
+        CommandResult result = transport.execute(target, filter.findCommand(directory), parser);
+        parser.close();
+        System.err.print(result.getStderr());
+        // The consumer has seen a partial listing; callers must not take it for the whole directory.
+        if (!result.isSuccess()) {
+            throw new IOException("find on " + target + " failed: " + result);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package dd.project;
+
+/**
+ * SSH login coordinates for one host; identity is user@host:port.
+ */
+public class SshTarget {
+
+    private final String user;
+    private final String host;
+    private final int port;
+    private final String password;
+
+    public SshTarget(String user, String host, int port, String password) {
+        this.user = user;
+        this.host = host;
+        this.port = port;
+        this.password = password;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public String key() {
+        return user + "@" + host + ":" + port;
+    }
+
+    /** The machine, whoever logs in to it: host:port. */
+    public String hostKey() {
+        return host + ":" + port;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SshTarget && key().equals(((SshTarget) o).key());
+    }
+
+    @Override
+    public int hashCode() {
+        return key().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return key();
+    }
+}
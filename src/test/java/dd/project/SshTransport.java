@@ -0,0 +1,59 @@
+package dd.project;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs one command on a remote host. Implementations decide how connections and
+ * threads are managed; callers only see a future per command.
+ */
+public interface SshTransport extends AutoCloseable {
+
+    long DEFAULT_TIMEOUT_MS = Long.getLong("ssh.command.timeout.ms", 60000L);
+
+    /**
+     * Starts the command and completes with its result. With a non-null sink stdout is
+     * streamed into it (from a transport thread) instead of being collected into the result.
+     */
+    CompletableFuture<CommandResult> executeAsync(SshTarget target, String command, OutputStream stdoutSink, long timeoutMillis);
+
+    String name();
+
+    @Override
+    void close();
+
+    default CommandResult execute(SshTarget target, String command) throws IOException {
+        return execute(target, command, null, DEFAULT_TIMEOUT_MS);
+    }
+
+    default CommandResult execute(SshTarget target, String command, OutputStream stdoutSink) throws IOException {
+        return execute(target, command, stdoutSink, DEFAULT_TIMEOUT_MS);
+    }
+
+    default CommandResult execute(SshTarget target, String command, long timeoutMillis) throws IOException {
+        return execute(target, command, null, timeoutMillis);
+    }
+
+    default CommandResult execute(SshTarget target, String command, OutputStream stdoutSink, long timeoutMillis) throws IOException {
+        return await(executeAsync(target, command, stdoutSink, timeoutMillis), "Running " + command + " on " + target);
+    }
+
+    /** Blocks for a transport future, surfacing its failure as the IOException it usually is. */
+    static <T> T await(CompletableFuture<T> future, String description) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted: " + description);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(description + " failed", cause);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package dd.project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * One fleet sweep (a short command on every host at once) over the JSch pool, persistent
+ * shells on that pool and the MINA NIO transport, against an embedded SSH server where
+ * each user is a "host".
+ * Live thread counts are printed after each trial.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=dd.project.SshTransportBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SshTransportBenchmark {
+
+    private static final String COMMAND = "echo ok";
+
+    @Param({"jsch", "shell", "mina"})
+    public String transportName;
+
+    @Param({"50", "200"})
+    public int hosts;
+
+    private EmbeddedSshServer server;
+    private SshSessionPool pool;
+    private SshTransport transport;
+    private List<SshTarget> targets;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        server = new EmbeddedSshServer();
+        if ("jsch".equals(transportName)) {
+            pool = new SshSessionPool();
+            transport = new JschSshTransport(pool, Integer.getInteger("ssh.jsch.threads", 16));
+        } else if ("shell".equals(transportName)) {
+            pool = new SshSessionPool();
+            transport = new PersistentShellTransport(pool, Integer.getInteger("ssh.jsch.threads", 16));
+        } else {
+            transport = new MinaSshTransport(Integer.getInteger("ssh.mina.io.threads", 2));
+        }
+        targets = new ArrayList<>();
+        for (int i = 0; i < hosts; i++) {
+            targets.add(server.target("host" + i));
+        }
+        // Connect everything first; the benchmark measures steady-state sweeps.
+        sweep(null);
+    }
+
+    @Benchmark
+    public void sweep(Blackhole bh) throws Exception {
+        List<CompletableFuture<CommandResult>> futures = new ArrayList<>(targets.size());
+        for (SshTarget target : targets) {
+            futures.add(transport.executeAsync(target, COMMAND, null, SshTransport.DEFAULT_TIMEOUT_MS));
+        }
+        for (CompletableFuture<CommandResult> future : futures) {
+            CommandResult result = future.get();
+            if (!result.isSuccess()) {
+                throw new IllegalStateException(result + " " + result.getStderr());
+            }
+            if (bh != null) {
+                bh.consume(result.getStdout());
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        System.out.println("\n" + transportName + " with " + hosts + " hosts: " + Thread.activeCount() + " live threads");
+        transport.close();
+        if (pool != null) {
+            pool.close();
+        }
+        server.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(SshTransportBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,64 @@
+package dd.project;
+
+/**
+ * Picks the process-wide SSH transport: {@code -Dssh.transport=jsch} (default) for the
+ * JSch session pool, {@code shell} for one persistent shell per host on that pool, or
+ * {@code mina} for the NIO client. Identical commands whose output is collected rather
+ * than streamed are coalesced for {@code ssh.cache.ttl.ms} (default 30s).
+ */
+public final class SshTransports {
+
+    /** How long an identical command's result is shared; 0 disables the cache. */
+    public static final long CACHE_TTL_MS = Long.getLong("ssh.cache.ttl.ms", 30000L);
+
+    private static final SshTransport UNCACHED = create(System.getProperty("ssh.transport", "jsch"));
+    private static final SshTransport SHARED = withCache(UNCACHED, CACHE_TTL_MS);
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(SHARED::close, "ssh-transport-shutdown"));
+    }
+
+    private SshTransports() {
+    }
+
+    public static SshTransport shared() {
+        return SHARED;
+    }
+
+    /** The same transport without coalescing, for callers that must see the host's current state. */
+    public static SshTransport uncached() {
+        return UNCACHED;
+    }
+
+    public static SshTransport withCache(SshTransport transport, long ttlMillis) {
+        return ttlMillis > 0 ? new CachingSshTransport(transport, ttlMillis) : transport;
+    }
+
+    /** Command cache, df cache and session-pool counters of the shared transport, for the end of a run. */
+    public static String metricsSummary() {
+        StringBuilder summary = new StringBuilder("SSH transport " + SHARED.name());
+        SshTransport transport = SHARED;
+        if (transport instanceof CachingSshTransport) {
+            summary.append(": cache ").append(((CachingSshTransport) transport).getCache().metricsSummary());
+            transport = ((CachingSshTransport) transport).getDelegate();
+        }
+        summary.append("\ndf cache ").append(SshStorageProbe.getCapacityCache().metricsSummary());
+        if (transport instanceof JschSshTransport || transport instanceof PersistentShellTransport) {
+            summary.append("\n").append(SshSessionPool.shared().metricsSummary());
+        }
+        return summary.toString();
+    }
+
+    public static SshTransport create(String name) {
+        switch (name.toLowerCase()) {
+            case "jsch":
+                return new JschSshTransport(SshSessionPool.shared(), Integer.getInteger("ssh.jsch.threads", 16));
+            case "shell":
+                return new PersistentShellTransport(SshSessionPool.shared(), Integer.getInteger("ssh.jsch.threads", 16));
+            case "mina":
+                return new MinaSshTransport(Integer.getInteger("ssh.mina.io.threads", 2));
+            default:
+                throw new IllegalArgumentException("Unknown ssh.transport " + name + ", expected jsch, shell or mina");
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package dd.project;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-host agent: samples FileStore usage of the configured mounts every interval
+ * and watches one directory with a WatchService, streaming only changes to the
+ * collector over a single TCP connection (see AgentProtocol). Uses nothing outside
+ * the JDK so the agent jar runs on a bare storage node.
+ *
+ * <pre>
+ * java -jar project-agent.jar --collector collector-host:9750 --mount /mnt/local/nvmestorage \
+ *      --watch /store/nvmestorage/postImageProcessor [--name pp1] [--interval-ms 1000]
+ * </pre>
+ */
+public class StorageAgent {
+
+    private static final long HEARTBEAT_MS = 15000;
+    private static final long MAX_BACKOFF_MS = 60000;
+
+    private final InetSocketAddress collector;
+    private final String machineName;
+    private final List<Path> mounts;
+    private final Path watchDirectory;
+    private final long intervalMillis;
+    private final long minDeltaBytes;
+
+    public StorageAgent(InetSocketAddress collector, String machineName, List<Path> mounts, Path watchDirectory,
+            long intervalMillis, long minDeltaBytes) {
+        this.collector = collector;
+        this.machineName = machineName;
+        this.mounts = mounts;
+        this.watchDirectory = watchDirectory;
+        this.intervalMillis = intervalMillis;
+        this.minDeltaBytes = minDeltaBytes;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String collector = "localhost:" + AgentProtocol.DEFAULT_PORT;
+        String name = InetAddress.getLocalHost().getHostName();
+        List<Path> mounts = new ArrayList<>();
+        Path watch = null;
+        long interval = 1000;
+        long minDelta = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--collector":
+                    collector = args[i + 1];
+                    break;
+                case "--name":
+                    name = args[i + 1];
+                    break;
+                case "--mount":
+                    mounts.add(Paths.get(args[i + 1]));
+                    break;
+                case "--watch":
+                    watch = Paths.get(args[i + 1]);
+                    break;
+                case "--interval-ms":
+                    interval = Long.parseLong(args[i + 1]);
+                    break;
+                case "--min-delta-bytes":
+                    minDelta = Long.parseLong(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        int colon = collector.lastIndexOf(':');
+        InetSocketAddress address = new InetSocketAddress(collector.substring(0, colon),
+                Integer.parseInt(collector.substring(colon + 1)));
+        new StorageAgent(address, name, mounts, watch, interval, minDelta).run();
+    }
+
+    /** Streams until the process is killed, reconnecting with backoff whenever the collector goes away. */
+    public void run() throws IOException, InterruptedException {
+        WatchService watcher = FileSystems.getDefault().newWatchService();
+        if (watchDirectory != null) {
+            watchDirectory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        }
+        long backoff = 1000;
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(collector, 5000);
+                socket.setTcpNoDelay(true);
+                socket.setKeepAlive(true);
+                System.out.println("✅ Connected to collector " + collector);
+                backoff = 1000;
+                stream(new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())), watcher);
+            } catch (IOException e) {
+                System.out.println("⚠️ Collector " + collector + " unavailable: " + e.getMessage() + ", retrying in " + backoff + "ms");
+                Thread.sleep(backoff);
+                backoff = Math.min(MAX_BACKOFF_MS, backoff * 2);
+            }
+        }
+    }
+
+    private void stream(DataOutputStream out, WatchService watcher) throws IOException, InterruptedException {
+        out.writeInt(AgentProtocol.MAGIC);
+        out.writeByte(AgentProtocol.VERSION);
+        out.writeUTF(machineName);
+        out.writeUTF(watchDirectory == null ? "" : watchDirectory.toString());
+
+        // Whatever the watcher queued while disconnected is covered by the full listing.
+        for (WatchKey pending; (pending = watcher.poll()) != null; ) {
+            pending.pollEvents();
+            pending.reset();
+        }
+        Map<String, FileEntry> known = new HashMap<>();
+        Map<Path, long[]> sent = new HashMap<>();
+        rescan(out, known);
+        sampleStores(out, sent);
+        out.writeByte(AgentProtocol.SYNC);
+        out.flush();
+
+        long lastWrite = System.currentTimeMillis();
+        while (true) {
+            boolean wrote = sampleStores(out, sent);
+            WatchKey key = watcher.poll(intervalMillis, TimeUnit.MILLISECONDS);
+            if (key != null) {
+                boolean overflow = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                    } else {
+                        wrote |= refresh(out, known, ((Path) event.context()).toString());
+                    }
+                }
+                key.reset();
+                if (overflow) {
+                    wrote |= rescan(out, known);
+                }
+            }
+            long now = System.currentTimeMillis();
+            if (wrote) {
+                lastWrite = now;
+            } else if (now - lastWrite >= HEARTBEAT_MS) {
+                out.writeByte(AgentProtocol.HEARTBEAT);
+                lastWrite = now;
+                wrote = true;
+            }
+            if (wrote) {
+                out.flush();
+            }
+        }
+    }
+
+    // Sends a STORE for every mount whose used bytes moved by at least minDeltaBytes since the last one sent.
+    private boolean sampleStores(DataOutputStream out, Map<Path, long[]> sent) throws IOException {
+        boolean wrote = false;
+        for (Path mount : mounts) {
+            FileStore store = Files.getFileStore(mount);
+            long now = System.currentTimeMillis();
+            long size = store.getTotalSpace();
+            long used = size - store.getUnallocatedSpace();
+            long avail = store.getUsableSpace();
+            long[] previous = sent.get(mount);
+            if (previous != null && size == previous[1] && Math.abs(used - previous[2]) < Math.max(1, minDeltaBytes)) {
+                continue;
+            }
+            long[] base = previous == null ? new long[4] : previous;
+            out.writeByte(AgentProtocol.STORE);
+            out.writeUTF(store.name());
+            out.writeUTF(mount.toString());
+            AgentProtocol.writeVarLong(out, now - base[0]);
+            AgentProtocol.writeVarLong(out, size - base[1]);
+            AgentProtocol.writeVarLong(out, used - base[2]);
+            AgentProtocol.writeVarLong(out, avail - base[3]);
+            sent.put(mount, new long[] {now, size, used, avail});
+            wrote = true;
+        }
+        return wrote;
+    }
+
+    private boolean rescan(DataOutputStream out, Map<String, FileEntry> known) throws IOException {
+        if (watchDirectory == null) {
+            return false;
+        }
+        boolean wrote = false;
+        Set<String> present = new HashSet<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(watchDirectory)) {
+            for (Path child : children) {
+                String name = child.getFileName().toString();
+                present.add(name);
+                wrote |= refresh(out, known, name);
+            }
+        }
+        for (String name : new ArrayList<>(known.keySet())) {
+            if (!present.contains(name)) {
+                wrote |= refresh(out, known, name);
+            }
+        }
+        return wrote;
+    }
+
+    // Re-stats one entry and sends an upsert or removal if it differs from what the collector has.
+    private boolean refresh(DataOutputStream out, Map<String, FileEntry> known, String name) throws IOException {
+        FileEntry current = null;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(watchDirectory.resolve(name), BasicFileAttributes.class);
+            if (!attributes.isDirectory()) {
+                current = new FileEntry(name, attributes.size(), attributes.lastModifiedTime().toMillis());
+            }
+        } catch (NoSuchFileException e) {
+            // Deleted before we got to it.
+        }
+        FileEntry previous = current == null ? known.remove(name) : known.put(name, current);
+        if (current == null) {
+            if (previous == null) {
+                return false;
+            }
+            out.writeByte(AgentProtocol.FILE_REMOVE);
+            out.writeUTF(name);
+            return true;
+        }
+        if (current.equals(previous)) {
+            return false;
+        }
+        out.writeByte(AgentProtocol.FILE_UPSERT);
+        out.writeUTF(name);
+        AgentProtocol.writeVarLong(out, current.getSizeBytes());
+        AgentProtocol.writeVarLong(out, current.getMtimeMillis());
+        return true;
+    }
+}
@@ -0,0 +1,111 @@
+package dd.project;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The alert rules the storage checks apply. A mount needs attention when its forecast
+ * will reach 90% within {@code storage.alert.eta90.hours} (default 48) or fills up within
+ * {@code storage.alert.eta100.hours} (default 168); without a reliable forecast it falls
+ * back to use% exceeding {@code storage.alert.usage.percent} (default 70, as in
+ * pp4storage). An entry is old when it was last modified before today, local time.
+ */
+public class StorageAlertEvaluator {
+
+    public static final int DEFAULT_USAGE_THRESHOLD_PERCENT = 70;
+
+    private final int usageThresholdPercent;
+    private final long eta90Millis;
+    private final long eta100Millis;
+
+    public StorageAlertEvaluator() {
+        this(Integer.getInteger("storage.alert.usage.percent", DEFAULT_USAGE_THRESHOLD_PERCENT));
+    }
+
+    public StorageAlertEvaluator(int usageThresholdPercent) {
+        this(usageThresholdPercent, TimeUnit.HOURS.toMillis(Long.getLong("storage.alert.eta90.hours", 48L)),
+                TimeUnit.HOURS.toMillis(Long.getLong("storage.alert.eta100.hours", 168L)));
+    }
+
+    public StorageAlertEvaluator(int usageThresholdPercent, long eta90Millis, long eta100Millis) {
+        this.usageThresholdPercent = usageThresholdPercent;
+        this.eta90Millis = eta90Millis;
+        this.eta100Millis = eta100Millis;
+    }
+
+    public int getUsageThresholdPercent() {
+        return usageThresholdPercent;
+    }
+
+    public boolean isOverThreshold(StorageSnapshot snapshot) {
+        return snapshot.getUsePercent() > usageThresholdPercent;
+    }
+
+    /**
+     * The 90% rule only looks ahead: a volume already past 90% but no longer growing
+     * towards full within the horizon stays quiet.
+     */
+    public boolean isFillingUp(CapacityForecaster.Forecast forecast) {
+        long until90 = forecast.getMillisUntil(90);
+        return (until90 > 0 && until90 < eta90Millis) || forecast.getMillisUntil(100) < eta100Millis;
+    }
+
+    /** The time-to-full rule when the forecast is reliable, the static use% rule otherwise. */
+    public boolean needsAttention(StorageSnapshot snapshot, CapacityForecaster.Forecast forecast) {
+        return forecast != null && forecast.isReliable() ? isFillingUp(forecast) : isOverThreshold(snapshot);
+    }
+
+    public String usageAlert(String machineName, StorageSnapshot snapshot, CapacityForecaster.Forecast forecast) {
+        if (forecast != null && forecast.isReliable()) {
+            return machineName + " - " + forecast;
+        }
+        return machineName + " - " + snapshot.getMountedOn() + " used storage is " + snapshot.getUsePercent()
+                + "%, exceeding " + usageThresholdPercent + "%";
+    }
+
+    public boolean isOld(FileEntry entry) {
+        return entry.getMtimeMillis() < LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /** Same rule for listings that only carry an ISO yyyy-MM-dd date. */
+    public boolean isOld(String isoDate) {
+        return isoDate.compareTo(LocalDate.now().toString()) < 0;
+    }
+
+    /**
+     * Every alert currently raised for one machine, keyed so callers can tell a new
+     * alert from one that is still active: {@code usage:<mount>} and {@code old:<directory>}.
+     */
+    public Map<String, String> evaluate(String machineName, Collection<StorageSnapshot> mounts,
+            String directory, Collection<FileEntry> entries) {
+        return evaluate(machineName, mounts, Collections.emptyMap(), directory, entries);
+    }
+
+    /** As above, applying the time-to-full rule to mounts with a forecast in {@code forecasts}. */
+    public Map<String, String> evaluate(String machineName, Collection<StorageSnapshot> mounts,
+            Map<String, CapacityForecaster.Forecast> forecasts, String directory, Collection<FileEntry> entries) {
+        Map<String, String> alerts = new LinkedHashMap<>();
+        for (StorageSnapshot mount : mounts) {
+            CapacityForecaster.Forecast forecast = forecasts.get(mount.getMountedOn());
+            if (needsAttention(mount, forecast)) {
+                alerts.put("usage:" + mount.getMountedOn(), usageAlert(machineName, mount, forecast));
+            }
+        }
+        FileSummaryAggregator oldFiles = new FileSummaryAggregator();
+        for (FileEntry entry : entries) {
+            if (isOld(entry)) {
+                oldFiles.accept(entry);
+            }
+        }
+        if (directory != null && oldFiles.getCount() > 0) {
+            alerts.put("old:" + directory, machineName + " - " + directory + " contains " + oldFiles.getCount()
+                    + " old files: " + oldFiles);
+        }
+        return alerts;
+    }
+}
@@ -0,0 +1,197 @@
+package dd.project;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Receives StorageAgent streams and runs each machine's current state through
+ * StorageAlertEvaluator, reporting an alert when it is raised and when it clears.
+ *
+ * <pre>
+ * java -cp project-agent.jar dd.project.StorageCollector [--port 9750] [--usage-threshold 70]
+ * </pre>
+ */
+public class StorageCollector {
+
+    private final StorageAlertEvaluator evaluator;
+    private final Consumer<String> alertSink;
+    private final Map<String, AgentState> agents = new ConcurrentHashMap<>();
+
+    public StorageCollector(StorageAlertEvaluator evaluator, Consumer<String> alertSink) {
+        this.evaluator = evaluator;
+        this.alertSink = alertSink;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = AgentProtocol.DEFAULT_PORT;
+        StorageAlertEvaluator evaluator = new StorageAlertEvaluator();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--usage-threshold":
+                    evaluator = new StorageAlertEvaluator(Integer.parseInt(args[i + 1]));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        StorageCollector collector = new StorageCollector(evaluator, message -> {
+            System.out.println(message);
+            System.out.flush();
+        });
+        collector.serve(new ServerSocket(port));
+    }
+
+    /** Accepts agents forever, one reader thread per connected machine. */
+    public void serve(ServerSocket server) throws IOException {
+        System.out.println("✅ Collector listening on port " + server.getLocalPort());
+        System.out.flush();
+        while (true) {
+            Socket socket = server.accept();
+            Thread reader = new Thread(() -> handle(socket), "collector-" + socket.getRemoteSocketAddress());
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    public Map<String, AgentState> getAgents() {
+        return Collections.unmodifiableMap(agents);
+    }
+
+    private void handle(Socket socket) {
+        String machine = String.valueOf(socket.getRemoteSocketAddress());
+        try (Socket s = socket; DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()))) {
+            if (in.readInt() != AgentProtocol.MAGIC || in.readUnsignedByte() != AgentProtocol.VERSION) {
+                throw new IOException("Not a storage agent or unsupported protocol version");
+            }
+            machine = in.readUTF();
+            String directory = in.readUTF();
+            // A reconnecting agent resends everything, so its state starts over; raised alerts and growth models carry across.
+            AgentState previous = agents.get(machine);
+            AgentState state = new AgentState(machine, directory.isEmpty() ? null : directory,
+                    previous == null ? new LinkedHashMap<>() : previous.raised,
+                    previous == null ? new CapacityForecaster() : previous.forecaster);
+            agents.put(machine, state);
+            alertSink.accept("📡 Agent " + machine + " connected from " + s.getRemoteSocketAddress());
+
+            Map<String, long[]> lastStore = new HashMap<>();
+            while (true) {
+                byte type = in.readByte();
+                switch (type) {
+                    case AgentProtocol.STORE: {
+                        String filesystem = in.readUTF();
+                        String mount = in.readUTF();
+                        long[] base = lastStore.getOrDefault(mount, new long[4]);
+                        long[] values = new long[4];
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = base[i] + AgentProtocol.readVarLong(in);
+                        }
+                        lastStore.put(mount, values);
+                        StorageSnapshot snapshot = new StorageSnapshot(filesystem, values[1], values[2], values[3],
+                                -1, -1, -1, mount, values[0]);
+                        state.mounts.put(mount, snapshot);
+                        state.forecasts.put(mount, state.forecaster.update(snapshot));
+                        break;
+                    }
+                    case AgentProtocol.FILE_UPSERT: {
+                        String name = in.readUTF();
+                        long size = AgentProtocol.readVarLong(in);
+                        long mtime = AgentProtocol.readVarLong(in);
+                        state.files.put(name, new FileEntry(name, size, mtime));
+                        break;
+                    }
+                    case AgentProtocol.FILE_REMOVE:
+                        state.files.remove(in.readUTF());
+                        break;
+                    case AgentProtocol.SYNC:
+                        state.synced = true;
+                        break;
+                    case AgentProtocol.HEARTBEAT:
+                        break;
+                    default:
+                        throw new IOException("Unknown record type " + type);
+                }
+                state.lastSeenMillis = System.currentTimeMillis();
+                // Evaluate once per burst rather than per record.
+                if (state.synced && in.available() == 0) {
+                    evaluate(state);
+                }
+            }
+        } catch (EOFException e) {
+            alertSink.accept("📴 Agent " + machine + " disconnected");
+        } catch (IOException e) {
+            alertSink.accept("⚠️ Agent " + machine + " stream failed: " + e.getMessage());
+        }
+    }
+
+    private void evaluate(AgentState state) {
+        Map<String, String> current = evaluator.evaluate(state.machine, state.mounts.values(), state.forecasts, state.directory,
+                state.files.values());
+        synchronized (state.raised) {
+            for (Map.Entry<String, String> alert : current.entrySet()) {
+                if (!state.raised.containsKey(alert.getKey())) {
+                    alertSink.accept("🚨 ALERT " + alert.getValue());
+                }
+            }
+            for (Map.Entry<String, String> alert : state.raised.entrySet()) {
+                if (!current.containsKey(alert.getKey())) {
+                    alertSink.accept("✅ RESOLVED " + alert.getValue());
+                }
+            }
+            state.raised.clear();
+            state.raised.putAll(current);
+        }
+    }
+
+    /** What the collector currently knows about one machine. */
+    public static final class AgentState {
+        private final String machine;
+        private final String directory;
+        private final Map<String, StorageSnapshot> mounts = new ConcurrentHashMap<>();
+        private final Map<String, FileEntry> files = new ConcurrentHashMap<>();
+        private final Map<String, CapacityForecaster.Forecast> forecasts = new ConcurrentHashMap<>();
+        private final Map<String, String> raised;
+        private final CapacityForecaster forecaster;
+        private volatile boolean synced;
+        private volatile long lastSeenMillis;
+
+        AgentState(String machine, String directory, Map<String, String> raised, CapacityForecaster forecaster) {
+            this.machine = machine;
+            this.directory = directory;
+            this.raised = raised;
+            this.forecaster = forecaster;
+        }
+
+        public Map<String, CapacityForecaster.Forecast> getForecasts() {
+            return Collections.unmodifiableMap(forecasts);
+        }
+
+        public String getMachine() {
+            return machine;
+        }
+
+        public Map<String, StorageSnapshot> getMounts() {
+            return Collections.unmodifiableMap(mounts);
+        }
+
+        public Map<String, FileEntry> getFiles() {
+            return Collections.unmodifiableMap(files);
+        }
+
+        public long getLastSeenMillis() {
+            return lastSeenMillis;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package dd.project;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Parses {@code ls -lh --time-style=long-iso}, {@link StorageSnapshot#DF_COMMAND} or NUL-separated
+ * {@code find -printf '%T@ %s %P\0'} output as bytes arrive.
+ * Lines are cut at the byte level before decoding, so a multibyte UTF-8 name split
+ * across read chunks is decoded whole. Fields are located by index into a reused
+ * char buffer; only the final record values become Strings.
+ */
+public class StorageOutputParser extends OutputStream {
+
+    private enum Mode { LISTING, DF_BYTES, FIND }
+
+    /** The {@code -printf} format {@link #forFind} expects. */
+    public static final String FIND_FORMAT = "%T@ %s %P\\0";
+
+    private static final int MAX_FIELDS = 8;
+
+    private final Mode mode;
+    private final Consumer<ListingRecord> listingConsumer;
+    private final Consumer<StorageSnapshot> dfConsumer;
+    private final Consumer<FileEntry> findConsumer;
+    private final byte delimiter;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private CharBuffer chars = CharBuffer.allocate(256);
+    private final int[] fieldStart = new int[MAX_FIELDS];
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+    private long lineNumber;
+    private final long startedAtMillis = System.currentTimeMillis();
+
+    private StorageOutputParser(Mode mode, Consumer<ListingRecord> listingConsumer, Consumer<StorageSnapshot> dfConsumer,
+            Consumer<FileEntry> findConsumer) {
+        this.mode = mode;
+        this.listingConsumer = listingConsumer;
+        this.dfConsumer = dfConsumer;
+        this.findConsumer = findConsumer;
+        this.delimiter = mode == Mode.FIND ? (byte) 0 : (byte) '\n';
+    }
+
+    public static StorageOutputParser forListing(Consumer<ListingRecord> consumer) {
+        return new StorageOutputParser(Mode.LISTING, consumer, null, null);
+    }
+
+    public static StorageOutputParser forDfBytes(Consumer<StorageSnapshot> consumer) {
+        return new StorageOutputParser(Mode.DF_BYTES, null, consumer, null);
+    }
+
+    public static StorageOutputParser forFind(Consumer<FileEntry> consumer) {
+        return new StorageOutputParser(Mode.FIND, null, null, consumer);
+    }
+
+    @Override
+    public void write(int b) {
+        if ((byte) b == delimiter) {
+            endLine();
+        } else {
+            ensureLineCapacity(lineLength + 1);
+            line[lineLength++] = (byte) b;
+        }
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        int from = offset;
+        for (int i = offset; i < end; i++) {
+            if (buffer[i] == delimiter) {
+                append(buffer, from, i - from);
+                endLine();
+                from = i + 1;
+            }
+        }
+        append(buffer, from, end - from);
+    }
+
+    /**
+     * Emits a trailing line that was not newline-terminated.
+     */
+    @Override
+    public void close() {
+        if (lineLength > 0) {
+            endLine();
+        }
+    }
+
+    private void append(byte[] buffer, int from, int length) {
+        if (length > 0) {
+            ensureLineCapacity(lineLength + length);
+            System.arraycopy(buffer, from, line, lineLength, length);
+            lineLength += length;
+        }
+    }
+
+    private void ensureLineCapacity(int needed) {
+        if (needed > line.length) {
+            line = Arrays.copyOf(line, Math.max(needed, line.length * 2));
+        }
+    }
+
+    private void endLine() {
+        lineNumber++;
+        decodeLine();
+        lineLength = 0;
+        if (mode == Mode.LISTING) {
+            parseListing();
+        } else if (mode == Mode.DF_BYTES) {
+            parseDfBytes();
+        } else {
+            parseFind();
+        }
+    }
+
+    private void decodeLine() {
+        if (chars.capacity() < lineLength) {
+            chars = CharBuffer.allocate(Math.max(lineLength, chars.capacity() * 2));
+        }
+        chars.clear();
+        decoder.reset();
+        decoder.decode(ByteBuffer.wrap(line, 0, lineLength), chars, true);
+        decoder.flush(chars);
+        chars.flip();
+    }
+
+    // Splits on runs of whitespace; the last field swallows the rest of the line (names may contain spaces).
+    private int tokenize(int maxFields) {
+        int length = chars.limit();
+        int count = 0;
+        int i = 0;
+        while (count < maxFields) {
+            while (i < length && Character.isWhitespace(chars.get(i))) {
+                i++;
+            }
+            if (i >= length) {
+                break;
+            }
+            fieldStart[count] = i;
+            if (count == maxFields - 1) {
+                int end = length;
+                while (end > i && Character.isWhitespace(chars.get(end - 1))) {
+                    end--;
+                }
+                fieldEnd[count++] = end;
+                break;
+            }
+            while (i < length && !Character.isWhitespace(chars.get(i))) {
+                i++;
+            }
+            fieldEnd[count++] = i;
+        }
+        return count;
+    }
+
+    private boolean startsWith(String prefix) {
+        if (chars.limit() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (chars.get(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String field(int index) {
+        return chars.subSequence(fieldStart[index], fieldEnd[index]).toString();
+    }
+
+    private void parseListing() {
+        if (startsWith("total") || startsWith("drwx")) {
+            return;
+        }
+        if (tokenize(8) < 8) {
+            return;
+        }
+        listingConsumer.accept(new ListingRecord(field(5), field(6), field(4), field(7)));
+    }
+
+    // source, size, used, avail, itotal, iused, iavail, target; the mount point may contain spaces.
+    private void parseDfBytes() {
+        if (lineNumber == 1 && startsWith("Filesystem")) {
+            return;
+        }
+        if (tokenize(8) < 8) {
+            return;
+        }
+        dfConsumer.accept(new StorageSnapshot(field(0),
+                parseLong(fieldStart[1], fieldEnd[1]), parseLong(fieldStart[2], fieldEnd[2]), parseLong(fieldStart[3], fieldEnd[3]),
+                parseLong(fieldStart[4], fieldEnd[4]), parseLong(fieldStart[5], fieldEnd[5]), parseLong(fieldStart[6], fieldEnd[6]),
+                field(7), startedAtMillis));
+    }
+
+    // "<epoch seconds>.<fraction> <bytes> <relative path>"; the path is taken verbatim.
+    private void parseFind() {
+        int length = chars.limit();
+        int firstSpace = indexOf(' ', 0, length);
+        int secondSpace = firstSpace < 0 ? -1 : indexOf(' ', firstSpace + 1, length);
+        if (secondSpace < 0 || secondSpace + 1 >= length) {
+            return;
+        }
+        long mtimeMillis = parseEpochMillis(0, firstSpace);
+        long size = parseLong(firstSpace + 1, secondSpace);
+        if (mtimeMillis < 0 || size < 0) {
+            return;
+        }
+        findConsumer.accept(new FileEntry(chars.subSequence(secondSpace + 1, length).toString(), size, mtimeMillis));
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (chars.get(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private long parseLong(int start, int end) {
+        if (start >= end) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = chars.get(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private long parseEpochMillis(int start, int end) {
+        int dot = indexOf('.', start, end);
+        long seconds = parseLong(start, dot < 0 ? end : dot);
+        if (seconds < 0) {
+            return -1;
+        }
+        long millis = 0;
+        int digits = 0;
+        for (int i = dot + 1; dot >= 0 && i < end && digits < 3; i++, digits++) {
+            millis = millis * 10 + (chars.get(i) - '0');
+        }
+        for (; digits < 3; digits++) {
+            millis *= 10;
+        }
+        return seconds * 1000 + millis;
+    }
+
+    public static final class ListingRecord {
+        private final String date;
+        private final String time;
+        private final String size;
+        private final String name;
+
+        public ListingRecord(String date, String time, String size, String name) {
+            this.date = date;
+            this.time = time;
+            this.size = size;
+            this.name = name;
+        }
+
+        public String getDate() {
+            return date;
+        }
+
+        public String getTime() {
+            return time;
+        }
+
+        public String getSize() {
+            return size;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package dd.project;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the probes' old split-based listing parse with StorageOutputParser.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=dd.project.StorageOutputParserBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageOutputParserBenchmark {
+
+    private static final int CHUNK = 1024;
+
+    @Param({"10000", "200000"})
+    public int entries;
+
+    private byte[] listing;
+
+    @Setup
+    public void createListing() {
+        StringBuilder sb = new StringBuilder("total 1.2T\n");
+        for (int i = 0; i < entries; i++) {
+            String day = i % 3 == 0 ? "2025-01-0" + (1 + i % 9) : "2025-02-1" + (i % 9);
+            // Every fifth name is multibyte so chunk boundaries regularly fall inside a character.
+            String name = i % 5 == 0 ? "scan_Ω_片_" + i + ".jp2" : "B_" + i + "_NISSL_section.jp2";
+            sb.append("-rw-r--r-- 1 appUser appUser 1.2G ").append(day).append(" 12:34 ").append(name).append('\n');
+        }
+        listing = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // The loop the probes used: per-chunk String decoding, then split on the whole output.
+    @Benchmark
+    public void splitBased(Blackhole bh) {
+        StringBuilder output = new StringBuilder();
+        for (int off = 0; off < listing.length; off += CHUNK) {
+            output.append(new String(listing, off, Math.min(CHUNK, listing.length - off)));
+        }
+        for (String line : output.toString().split("\n")) {
+            if (!line.startsWith("total") && !line.startsWith("drwx")) {
+                String[] parts = line.trim().split("\\s+", 8);
+                if (parts.length >= 8) {
+                    bh.consume(parts[5]);
+                    bh.consume(parts[7]);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void streaming(Blackhole bh) {
+        StorageOutputParser parser = StorageOutputParser.forListing(entry -> {
+            bh.consume(entry.getDate());
+            bh.consume(entry.getName());
+        });
+        for (int off = 0; off < listing.length; off += CHUNK) {
+            parser.write(listing, off, Math.min(CHUNK, listing.length - off));
+        }
+        parser.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(StorageOutputParserBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,55 @@
+package dd.project;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Feeds find output to StorageOutputParser one byte at a time and in uneven chunks, so
+ * multibyte characters and NUL delimiters land on every possible write() boundary.
+ */
+public class StorageOutputParserCheck {
+
+    private static final String FIND_OUTPUT = "1700000000.1234567890 1024 scan_Ω_片.jp2\0"
+            + "1700000001.5 0 dir with space/B_1_NISSL.jp2\0"
+            + "1700000002 42 😀\0";
+
+    @Test
+    public void testFindSplitAcrossWrites() {
+        byte[] bytes = FIND_OUTPUT.getBytes(StandardCharsets.UTF_8);
+        for (int chunk = 1; chunk <= bytes.length; chunk++) {
+            List<FileEntry> entries = new ArrayList<>();
+            StorageOutputParser parser = StorageOutputParser.forFind(entries::add);
+            for (int off = 0; off < bytes.length; off += chunk) {
+                int length = Math.min(chunk, bytes.length - off);
+                if (length == 1) {
+                    parser.write(bytes[off]);
+                } else {
+                    parser.write(bytes, off, length);
+                }
+            }
+            parser.close();
+
+            Assert.assertEquals(entries.size(), 3, "chunk size " + chunk);
+            Assert.assertEquals(entries.get(0), new FileEntry("scan_Ω_片.jp2", 1024, 1700000000123L), "chunk size " + chunk);
+            Assert.assertEquals(entries.get(1), new FileEntry("dir with space/B_1_NISSL.jp2", 0, 1700000001500L), "chunk size " + chunk);
+            Assert.assertEquals(entries.get(2), new FileEntry("😀", 42, 1700000002000L), "chunk size " + chunk);
+        }
+    }
+
+    @Test
+    public void testUnterminatedLastRecord() {
+        byte[] bytes = "1700000000.0 7 Ω".getBytes(StandardCharsets.UTF_8);
+        List<FileEntry> entries = new ArrayList<>();
+        StorageOutputParser parser = StorageOutputParser.forFind(entries::add);
+        parser.write(bytes, 0, bytes.length - 1);
+        Assert.assertTrue(entries.isEmpty());
+        parser.write(bytes, bytes.length - 1, 1);
+        parser.close();
+        Assert.assertEquals(entries.size(), 1);
+        Assert.assertEquals(entries.get(0).getPath(), "Ω");
+    }
+}
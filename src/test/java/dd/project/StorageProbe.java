@@ -0,0 +1,23 @@
+package dd.project;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Where the storage checks get their numbers from: a host over SSH or, when the
+ * monitor runs on the storage node itself, the local filesystem. Both produce the
+ * same records. Pick with {@code -Dstorage.probe=ssh|local}, see StorageProbes.
+ */
+public interface StorageProbe {
+
+    /** Capacity of the filesystem holding {@code mount}, as df reports it. */
+    List<StorageSnapshot> capacity(String mount) throws IOException;
+
+    /**
+     * Direct, non-directory children of {@code directory} matching {@code filter}.
+     * The consumer may be called from several threads. Throws if the listing did not
+     * complete, possibly after the consumer has seen part of it.
+     */
+    void forEachEntry(String directory, RemoteFileFilter filter, Consumer<FileEntry> consumer) throws IOException;
+}
@@ -0,0 +1,22 @@
+package dd.project;
+
+/**
+ * Chooses the probe backend: {@code -Dstorage.probe=ssh} (default) queries the target
+ * host, {@code -Dstorage.probe=local} ignores the target and reads this machine's
+ * filesystem.
+ */
+public final class StorageProbes {
+
+    private static final boolean LOCAL = "local".equalsIgnoreCase(System.getProperty("storage.probe", "ssh"));
+
+    private StorageProbes() {
+    }
+
+    public static boolean isLocal() {
+        return LOCAL;
+    }
+
+    public static StorageProbe forTarget(SshTarget target) {
+        return LOCAL ? LocalStorageProbe.shared() : new SshStorageProbe(target, SshTransports.shared());
+    }
+}
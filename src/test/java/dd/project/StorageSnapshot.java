@@ -0,0 +1,101 @@
+package dd.project;
+
+/**
+ * Capacity of one mounted filesystem in bytes and inodes, as reported by
+ * {@code df --output=source,size,used,avail,itotal,iused,iavail,target -B1}.
+ * Inode counts are -1 where the filesystem does not report them.
+ */
+public final class StorageSnapshot {
+
+    /** The df invocation {@link StorageOutputParser#forDfBytes} expects. */
+    public static final String DF_COMMAND = "df --output=source,size,used,avail,itotal,iused,iavail,target -B1";
+
+    private final String filesystem;
+    private final long sizeBytes;
+    private final long usedBytes;
+    private final long availBytes;
+    private final long inodes;
+    private final long inodesUsed;
+    private final long inodesFree;
+    private final String mountedOn;
+    private final long capturedAtMillis;
+
+    public StorageSnapshot(String filesystem, long sizeBytes, long usedBytes, long availBytes,
+            long inodes, long inodesUsed, long inodesFree, String mountedOn, long capturedAtMillis) {
+        this.filesystem = filesystem;
+        this.sizeBytes = sizeBytes;
+        this.usedBytes = usedBytes;
+        this.availBytes = availBytes;
+        this.inodes = inodes;
+        this.inodesUsed = inodesUsed;
+        this.inodesFree = inodesFree;
+        this.mountedOn = mountedOn;
+        this.capturedAtMillis = capturedAtMillis;
+    }
+
+    public String getFilesystem() {
+        return filesystem;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getAvailBytes() {
+        return availBytes;
+    }
+
+    public long getInodes() {
+        return inodes;
+    }
+
+    public long getInodesUsed() {
+        return inodesUsed;
+    }
+
+    public long getInodesFree() {
+        return inodesFree;
+    }
+
+    public String getMountedOn() {
+        return mountedOn;
+    }
+
+    public long getCapturedAtMillis() {
+        return capturedAtMillis;
+    }
+
+    /**
+     * Use% the way df computes it: used over what non-root users can reach, rounded up.
+     */
+    public int getUsePercent() {
+        long reachable = usedBytes + availBytes;
+        if (reachable <= 0) {
+            return 0;
+        }
+        return (int) ((usedBytes * 100 + reachable - 1) / reachable);
+    }
+
+    public static String humanBytes(long bytes) {
+        if (bytes < 1024) {
+            return Long.toString(bytes);
+        }
+        String units = "KMGTPE";
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length() - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return (value < 10 ? String.format("%.1f", value) : String.format("%.0f", value)) + units.charAt(unit);
+    }
+
+    @Override
+    public String toString() {
+        return filesystem + " on " + mountedOn + ": " + usedBytes + "/" + sizeBytes + " bytes (" + getUsePercent() + "%)";
+    }
+}
@@ -0,0 +1,452 @@
+package dd.project;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Append-only history of df samples per (host, mount), so capacity can be trended
+ * instead of only compared against a threshold.
+ *
+ * Each series is a directory of fixed-size memory-mapped segment files named by their
+ * first timestamp. A sample is seven fields (timestamp, size, used, avail, inodes,
+ * inodes used, inodes free), each stored as a zigzag varint of its delta-of-delta
+ * against the previous two samples in the segment. Regularly spaced samples of a
+ * slowly moving mount therefore take one byte per field. Writes go straight into the
+ * mapping and queries stream from it, so heap use does not grow with history.
+ *
+ * Segment layout: magic, version, sample count, end of data, first and last timestamp,
+ * then host, mount and filesystem, then the samples. Readers decode up to the end of
+ * data and derive the count from it, and an append moves the end of data only once the
+ * sample is written, so a sample torn by a crash is ignored.
+ *
+ * Cron-driven probes and the fleet sweep run in separate JVMs and append to the same
+ * series, so each append holds an exclusive lock on the series' {@code lock} file and
+ * first replays the newest segment if another process appended or rolled since.
+ */
+public class UsageHistoryStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x44445453; // "DDTS"
+    private static final byte VERSION = 1;
+    private static final int FIELDS = 7;
+    private static final int MAX_SAMPLE_BYTES = FIELDS * 10;
+    private static final int COUNT_OFFSET = 8;
+    private static final int END_OFFSET = 12;
+    private static final int FIRST_TS_OFFSET = 16;
+    private static final int LAST_TS_OFFSET = 24;
+    private static final int HEADER_BYTES = 32;
+
+    private static final UsageHistoryStore SHARED = new UsageHistoryStore(
+            Paths.get(System.getProperty("storage.history.dir", System.getProperty("user.home") + "/.dd-storage/history")),
+            Integer.getInteger("storage.history.segment.bytes", 1 << 20));
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(SHARED::close, "usage-history-shutdown"));
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    // host -> mount -> series; nested so lookups do not build a key per sample.
+    private final Map<String, Map<String, Series>> series = new HashMap<>();
+
+    public UsageHistoryStore(Path directory, int segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    public static UsageHistoryStore shared() {
+        return SHARED;
+    }
+
+    /**
+     * Appends every row to the shared store. History is best effort: a failure is
+     * reported and never stops the check that produced the numbers.
+     */
+    public static void record(String host, List<StorageSnapshot> rows) {
+        try {
+            for (StorageSnapshot row : rows) {
+                SHARED.append(host, row);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("⚠️ Could not record usage history for " + host + ": " + e.getMessage());
+        }
+    }
+
+    public synchronized Series series(String host, String mount) throws IOException {
+        Map<String, Series> mounts = series.computeIfAbsent(host, h -> new HashMap<>());
+        Series s = mounts.get(mount);
+        if (s == null) {
+            s = new Series(host, mount);
+            mounts.put(mount, s);
+        }
+        return s;
+    }
+
+    public void append(String host, StorageSnapshot snapshot) throws IOException {
+        Series s = series(host, snapshot.getMountedOn());
+        synchronized (this) {
+            s.append(snapshot.getFilesystem(), snapshot.getCapturedAtMillis(), snapshot.getSizeBytes(), snapshot.getUsedBytes(),
+                    snapshot.getAvailBytes(), snapshot.getInodes(), snapshot.getInodesUsed(), snapshot.getInodesFree());
+        }
+    }
+
+    /** Every sample with {@code fromMillis <= timestamp <= toMillis}, oldest first. */
+    public synchronized void query(String host, String mount, long fromMillis, long toMillis, Consumer<StorageSnapshot> consumer)
+            throws IOException {
+        scan(host, mount, fromMillis, toMillis, (filesystem, v) -> consumer.accept(
+                new StorageSnapshot(filesystem, v[1], v[2], v[3], v[4], v[5], v[6], mount, v[0])));
+    }
+
+    /**
+     * Samples in {@code [fromMillis, toMillis]} folded into buckets aligned to multiples of
+     * {@code bucketMillis}; empty buckets are skipped.
+     */
+    public synchronized void downsample(String host, String mount, long fromMillis, long toMillis, long bucketMillis,
+            Consumer<UsageBucket> consumer) throws IOException {
+        UsageBucket[] open = {null};
+        scan(host, mount, fromMillis, toMillis, (filesystem, v) -> {
+            long start = Math.floorDiv(v[0], bucketMillis) * bucketMillis;
+            if (open[0] != null && open[0].startMillis != start) {
+                consumer.accept(open[0]);
+                open[0] = null;
+            }
+            if (open[0] == null) {
+                open[0] = new UsageBucket(start);
+            }
+            open[0].add(v);
+        });
+        if (open[0] != null) {
+            consumer.accept(open[0]);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Map<String, Series> mounts : series.values()) {
+            for (Series s : mounts.values()) {
+                s.force();
+            }
+        }
+    }
+
+    private interface SampleVisitor {
+        void visit(String filesystem, long[] values);
+    }
+
+    private void scan(String host, String mount, long fromMillis, long toMillis, SampleVisitor visitor) throws IOException {
+        Path seriesDirectory = seriesDirectory(host, mount);
+        if (!Files.isDirectory(seriesDirectory)) {
+            return;
+        }
+        long[] values = new long[FIELDS];
+        long[] previous = new long[FIELDS];
+        long[] previousDelta = new long[FIELDS];
+        for (Path segment : segments(seriesDirectory)) {
+            ByteBuffer buffer = map(segment, FileChannel.MapMode.READ_ONLY);
+            if (buffer.getLong(LAST_TS_OFFSET) < fromMillis) {
+                continue;
+            }
+            if (buffer.getLong(FIRST_TS_OFFSET) > toMillis) {
+                break;
+            }
+            int end = buffer.getInt(END_OFFSET);
+            buffer.position(HEADER_BYTES);
+            getString(buffer);
+            getString(buffer);
+            String filesystem = getString(buffer);
+            for (int i = 0; buffer.position() < end; i++) {
+                decode(buffer, i, values, previous, previousDelta);
+                if (values[0] > toMillis) {
+                    return;
+                }
+                if (values[0] >= fromMillis) {
+                    visitor.visit(filesystem, values);
+                }
+            }
+        }
+    }
+
+    private Path seriesDirectory(String host, String mount) {
+        String name = (host + "_" + mount).replaceAll("[^A-Za-z0-9._-]", "_");
+        return directory.resolve(name + "-" + Integer.toHexString((host + "\n" + mount).hashCode()));
+    }
+
+    private static List<Path> segments(Path seriesDirectory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(seriesDirectory, "*.seg")) {
+            for (Path segment : stream) {
+                segments.add(segment);
+            }
+        }
+        // Zero-padded first timestamps, so name order is time order.
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static MappedByteBuffer map(Path segment, FileChannel.MapMode mode) throws IOException {
+        try (FileChannel channel = mode == FileChannel.MapMode.READ_ONLY
+                ? FileChannel.open(segment, StandardOpenOption.READ)
+                : FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(mode, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.get(4) != VERSION) {
+                throw new IOException(segment + " is not a usage history segment");
+            }
+            return buffer;
+        }
+    }
+
+    // Sample i of a segment: raw values first, then deltas, then deltas of deltas.
+    private static void decode(ByteBuffer buffer, int index, long[] values, long[] previous, long[] previousDelta) {
+        for (int f = 0; f < FIELDS; f++) {
+            long stored = getVarLong(buffer);
+            if (index == 0) {
+                values[f] = stored;
+                previousDelta[f] = 0;
+            } else {
+                long delta = index == 1 ? stored : previousDelta[f] + stored;
+                values[f] = previous[f] + delta;
+                previousDelta[f] = delta;
+            }
+            previous[f] = values[f];
+        }
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long zigzag = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** The write side of one (host, mount) series; guarded by the store's lock and, across processes, its lock file. */
+    public final class Series {
+        private final String host;
+        private final String mount;
+        private final Path seriesDirectory;
+        private final Path lockFile;
+        private final long[] values = new long[FIELDS];
+        private final long[] previous = new long[FIELDS];
+        private final long[] previousDelta = new long[FIELDS];
+        private MappedByteBuffer active;
+        private Path activePath;
+        private String activeFilesystem;
+        private int count;
+        private long lastMillis = Long.MIN_VALUE;
+
+        private Series(String host, String mount) throws IOException {
+            this.host = host;
+            this.mount = mount;
+            this.seriesDirectory = seriesDirectory(host, mount);
+            this.lockFile = seriesDirectory.resolve("lock");
+            Files.createDirectories(seriesDirectory);
+        }
+
+        // Called holding the lock file: picks up whatever other processes wrote since this one last did.
+        private void catchUp() throws IOException {
+            List<Path> existing = segments(seriesDirectory);
+            if (existing.isEmpty()) {
+                active = null;
+                activePath = null;
+                lastMillis = Long.MIN_VALUE;
+                return;
+            }
+            Path newest = existing.get(existing.size() - 1);
+            // The mapping is shared, so another writer's end of data shows up in it.
+            if (!newest.equals(activePath) || active.getInt(END_OFFSET) != active.position()) {
+                resume(newest);
+            }
+        }
+
+        // Replays the newest segment so appends continue its delta chain.
+        private void resume(Path segment) throws IOException {
+            active = map(segment, FileChannel.MapMode.READ_WRITE);
+            activePath = segment;
+            int end = active.getInt(END_OFFSET);
+            active.position(HEADER_BYTES);
+            getString(active);
+            getString(active);
+            activeFilesystem = getString(active);
+            // The count header may be ahead of a torn sample; the end of data is authoritative.
+            for (count = 0; active.position() < end; count++) {
+                decode(active, count, values, previous, previousDelta);
+            }
+            active.putInt(COUNT_OFFSET, count);
+            lastMillis = count == 0 ? Long.MIN_VALUE : previous[0];
+        }
+
+        public void append(String filesystem, long timestampMillis, long sizeBytes, long usedBytes, long availBytes,
+                long inodes, long inodesUsed, long inodesFree) throws IOException {
+            try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // Released when the channel is closed.
+                lockChannel.lock();
+                catchUp();
+                write(filesystem, timestampMillis, sizeBytes, usedBytes, availBytes, inodes, inodesUsed, inodesFree);
+            }
+        }
+
+        private void write(String filesystem, long timestampMillis, long sizeBytes, long usedBytes, long availBytes,
+                long inodes, long inodesUsed, long inodesFree) throws IOException {
+            if (timestampMillis < lastMillis) {
+                throw new IllegalArgumentException("Sample for " + host + ":" + mount + " at " + timestampMillis
+                        + " is older than the last one at " + lastMillis);
+            }
+            if (active == null || active.remaining() < MAX_SAMPLE_BYTES || !filesystem.equals(activeFilesystem)) {
+                roll(filesystem, timestampMillis);
+            }
+            values[0] = timestampMillis;
+            values[1] = sizeBytes;
+            values[2] = usedBytes;
+            values[3] = availBytes;
+            values[4] = inodes;
+            values[5] = inodesUsed;
+            values[6] = inodesFree;
+            for (int f = 0; f < FIELDS; f++) {
+                long delta = values[f] - previous[f];
+                putVarLong(active, count == 0 ? values[f] : count == 1 ? delta : delta - previousDelta[f]);
+                previousDelta[f] = count == 0 ? 0 : delta;
+                previous[f] = values[f];
+            }
+            count++;
+            lastMillis = timestampMillis;
+            // End of data commits the sample; the count header is informational.
+            active.putLong(LAST_TS_OFFSET, timestampMillis);
+            active.putInt(END_OFFSET, active.position());
+            active.putInt(COUNT_OFFSET, count);
+        }
+
+        private void roll(String filesystem, long firstMillis) throws IOException {
+            force();
+            Path segment = seriesDirectory.resolve(String.format("%020d.seg", firstMillis));
+            // A roll within the same millisecond (e.g. a remount) gets the next free name.
+            for (long suffix = firstMillis + 1; Files.exists(segment); suffix++) {
+                segment = seriesDirectory.resolve(String.format("%020d.seg", suffix));
+            }
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                active = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            }
+            activePath = segment;
+            active.putInt(0, MAGIC);
+            active.put(4, VERSION);
+            active.putLong(FIRST_TS_OFFSET, firstMillis);
+            active.putLong(LAST_TS_OFFSET, firstMillis);
+            active.position(HEADER_BYTES);
+            putString(active, host);
+            putString(active, mount);
+            putString(active, filesystem);
+            active.putInt(COUNT_OFFSET, 0);
+            active.putInt(END_OFFSET, active.position());
+            activeFilesystem = filesystem;
+            count = 0;
+        }
+
+        void force() {
+            if (active != null) {
+                active.force();
+            }
+        }
+    }
+
+    /** Aggregate of the samples that fell into one downsampling bucket. */
+    public static final class UsageBucket {
+        private final long startMillis;
+        private int samples;
+        private long minUsedBytes = Long.MAX_VALUE;
+        private long maxUsedBytes = Long.MIN_VALUE;
+        private double usedSum;
+        private long lastSizeBytes;
+        private long lastAvailBytes;
+        private long lastInodesUsed;
+
+        UsageBucket(long startMillis) {
+            this.startMillis = startMillis;
+        }
+
+        void add(long[] values) {
+            samples++;
+            minUsedBytes = Math.min(minUsedBytes, values[2]);
+            maxUsedBytes = Math.max(maxUsedBytes, values[2]);
+            usedSum += values[2];
+            lastSizeBytes = values[1];
+            lastAvailBytes = values[3];
+            lastInodesUsed = values[5];
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        public int getSamples() {
+            return samples;
+        }
+
+        public long getMinUsedBytes() {
+            return minUsedBytes;
+        }
+
+        public long getMaxUsedBytes() {
+            return maxUsedBytes;
+        }
+
+        public long getAvgUsedBytes() {
+            return Math.round(usedSum / samples);
+        }
+
+        public long getLastSizeBytes() {
+            return lastSizeBytes;
+        }
+
+        public long getLastAvailBytes() {
+            return lastAvailBytes;
+        }
+
+        public long getLastInodesUsed() {
+            return lastInodesUsed;
+        }
+
+        @Override
+        public String toString() {
+            return startMillis + ": " + samples + " samples, used " + StorageSnapshot.humanBytes(minUsedBytes) + ".."
+                    + StorageSnapshot.humanBytes(maxUsedBytes) + " (avg " + StorageSnapshot.humanBytes(getAvgUsedBytes())
+                    + ") of " + StorageSnapshot.humanBytes(lastSizeBytes);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package dd.project;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Single-threaded append and downsample throughput of UsageHistoryStore, with the GC
+ * profiler so allocation per sample is visible. Each series gets one sample a minute
+ * with a slowly growing used count, like a busy mount polled by the probes.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=dd.project.UsageHistoryStoreBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UsageHistoryStoreBenchmark {
+
+    private static final long SIZE = 120L << 40;
+
+    @Param({"100"})
+    public int series;
+
+    private Path directory;
+    private UsageHistoryStore store;
+    private UsageHistoryStore.Series[] handles;
+    private long[] clocks;
+    private int next;
+
+    @Setup
+    public void openStore() throws IOException {
+        directory = Files.createTempDirectory("dd-history-bench");
+        store = new UsageHistoryStore(directory, 1 << 20);
+        handles = new UsageHistoryStore.Series[series];
+        clocks = new long[series];
+        for (int i = 0; i < series; i++) {
+            handles[i] = store.series("pp" + i + ".humanbrain.in", "/mnt/local/nvmestorage");
+            clocks[i] = 1_700_000_000_000L;
+        }
+        // A day of history on the first series for the query benchmark.
+        for (int i = 0; i < 1440; i++) {
+            append(0);
+        }
+    }
+
+    @TearDown
+    public void deleteStore() throws IOException {
+        store.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        append(next);
+        next = next + 1 == series ? 0 : next + 1;
+    }
+
+    @Benchmark
+    public long downsampleDayHourly() throws IOException {
+        long[] total = {0};
+        store.downsample("pp0.humanbrain.in", "/mnt/local/nvmestorage", 0, Long.MAX_VALUE, 3_600_000L,
+                bucket -> total[0] += bucket.getSamples());
+        return total[0];
+    }
+
+    private void append(int i) throws IOException {
+        long ts = clocks[i] += 60_000L;
+        long used = (SIZE / 2) + ((ts / 60_000L) % 1000) * 4096;
+        synchronized (store) {
+            handles[i].append("/dev/nvme0n1", ts, SIZE, used, SIZE - used, 7_000_000_000L, 1_000_000L, 6_999_000_000L);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(UsageHistoryStoreBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
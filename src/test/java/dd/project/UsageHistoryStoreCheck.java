@@ -0,0 +1,196 @@
+package dd.project;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Writes df samples into a UsageHistoryStore in a temp directory and reads them back,
+ * across segment rolls, reopened stores, stores sharing the directory and a simulated
+ * torn append.
+ */
+public class UsageHistoryStoreCheck {
+
+    private static final String HOST = "pp1.humanbrain.in";
+    private static final String MOUNT = "/mnt/local/nvmestorage";
+    private static final long T0 = 1_700_000_000_000L;
+    private static final long MINUTE = 60_000L;
+
+    private Path directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("dd-history");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testRoundTripAcrossSegments() throws IOException {
+        List<StorageSnapshot> written = new ArrayList<>();
+        // Small segments so the series rolls several times; used both grows and shrinks.
+        try (UsageHistoryStore store = new UsageHistoryStore(directory, 512)) {
+            for (int i = 0; i < 200; i++) {
+                StorageSnapshot sample = sample(T0 + i * MINUTE + (i % 7) * 13, 1_000_000_000L + (i % 5 == 0 ? -i * 4096L : i * 1_000_003L));
+                store.append(HOST, sample);
+                written.add(sample);
+            }
+            Assert.assertTrue(segmentCount() > 1, "expected the series to roll");
+
+            List<StorageSnapshot> read = new ArrayList<>();
+            store.query(HOST, MOUNT, Long.MIN_VALUE, Long.MAX_VALUE, read::add);
+            assertSamples(read, written);
+
+            List<StorageSnapshot> window = new ArrayList<>();
+            store.query(HOST, MOUNT, written.get(50).getCapturedAtMillis(), written.get(59).getCapturedAtMillis(), window::add);
+            assertSamples(window, written.subList(50, 60));
+        }
+    }
+
+    @Test
+    public void testResumeContinuesTheDeltaChain() throws IOException {
+        List<StorageSnapshot> written = new ArrayList<>();
+        try (UsageHistoryStore store = new UsageHistoryStore(directory, 1 << 16)) {
+            for (int i = 0; i < 10; i++) {
+                written.add(sample(T0 + i * MINUTE, 5_000_000L + i * 1000L));
+                store.append(HOST, written.get(i));
+            }
+        }
+        try (UsageHistoryStore store = new UsageHistoryStore(directory, 1 << 16)) {
+            for (int i = 10; i < 20; i++) {
+                written.add(sample(T0 + i * MINUTE, 5_000_000L - i * 3000L));
+                store.append(HOST, written.get(i));
+            }
+        }
+        Assert.assertEquals(segmentCount(), 1, "a reopened series appends to its last segment");
+        try (UsageHistoryStore store = new UsageHistoryStore(directory, 1 << 16)) {
+            List<StorageSnapshot> read = new ArrayList<>();
+            store.query(HOST, MOUNT, Long.MIN_VALUE, Long.MAX_VALUE, read::add);
+            assertSamples(read, written);
+        }
+    }
+
+    @Test
+    public void testTornAppendIsIgnored() throws IOException {
+        List<StorageSnapshot> written = new ArrayList<>();
+        try (UsageHistoryStore store = new UsageHistoryStore(directory, 1 << 16)) {
+            for (int i = 0; i < 5; i++) {
+                written.add(sample(T0 + i * MINUTE, 7_000_000L + i));
+                store.append(HOST, written.get(i));
+            }
+        }
+        // A crash mid-append: sample bytes and count written, end of data not yet moved.
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int end = buffer.getInt(12);
+            buffer.put(end, (byte) 0x83);
+            buffer.put(end + 1, (byte) 0x80);
+            buffer.putInt(8, buffer.getInt(8) + 1);
+            buffer.force();
+        }
+        try (UsageHistoryStore store = new UsageHistoryStore(directory, 1 << 16)) {
+            List<StorageSnapshot> read = new ArrayList<>();
+            store.query(HOST, MOUNT, Long.MIN_VALUE, Long.MAX_VALUE, read::add);
+            assertSamples(read, written);
+
+            written.add(sample(T0 + 5 * MINUTE, 7_000_005L));
+            store.append(HOST, written.get(5));
+            read.clear();
+            store.query(HOST, MOUNT, Long.MIN_VALUE, Long.MAX_VALUE, read::add);
+            assertSamples(read, written);
+        }
+    }
+
+    @Test
+    public void testStoresSharingADirectoryDoNotOverwriteEachOther() throws IOException {
+        List<StorageSnapshot> written = new ArrayList<>();
+        // Two stores stand in for a cron probe and the fleet sweep in separate JVMs.
+        try (UsageHistoryStore probe = new UsageHistoryStore(directory, 512);
+                UsageHistoryStore sweep = new UsageHistoryStore(directory, 512)) {
+            for (int i = 0; i < 60; i++) {
+                written.add(sample(T0 + i * MINUTE, 3_000_000L + i * 7919L));
+                (i % 3 == 0 ? sweep : probe).append(HOST, written.get(i));
+            }
+            Assert.assertTrue(segmentCount() > 1, "expected the series to roll");
+        }
+        try (UsageHistoryStore store = new UsageHistoryStore(directory, 512)) {
+            List<StorageSnapshot> read = new ArrayList<>();
+            store.query(HOST, MOUNT, Long.MIN_VALUE, Long.MAX_VALUE, read::add);
+            assertSamples(read, written);
+        }
+    }
+
+    @Test
+    public void testDownsample() throws IOException {
+        try (UsageHistoryStore store = new UsageHistoryStore(directory, 1 << 16)) {
+            // Three hours at one sample a minute; used climbs by 10 per minute.
+            long hour = 60 * MINUTE;
+            for (int i = 0; i < 180; i++) {
+                store.append(HOST, sample(T0 - T0 % hour + i * MINUTE, 1000L + 10L * i));
+            }
+            List<UsageHistoryStore.UsageBucket> buckets = new ArrayList<>();
+            store.downsample(HOST, MOUNT, Long.MIN_VALUE, Long.MAX_VALUE, hour, buckets::add);
+            Assert.assertEquals(buckets.size(), 3);
+            for (int b = 0; b < 3; b++) {
+                UsageHistoryStore.UsageBucket bucket = buckets.get(b);
+                Assert.assertEquals(bucket.getStartMillis(), T0 - T0 % hour + b * hour);
+                Assert.assertEquals(bucket.getSamples(), 60);
+                Assert.assertEquals(bucket.getMinUsedBytes(), 1000L + 600L * b);
+                Assert.assertEquals(bucket.getMaxUsedBytes(), 1000L + 600L * b + 590L);
+                Assert.assertEquals(bucket.getAvgUsedBytes(), 1000L + 600L * b + 295L);
+                Assert.assertEquals(bucket.getLastSizeBytes(), 1L << 40);
+            }
+        }
+    }
+
+    private static StorageSnapshot sample(long timestamp, long used) {
+        long size = 1L << 40;
+        return new StorageSnapshot("/dev/nvme0n1", size, used, size - used, 1_000_000L, used / 4096, 1_000_000L - used / 4096,
+                MOUNT, timestamp);
+    }
+
+    private static void assertSamples(List<StorageSnapshot> actual, List<StorageSnapshot> expected) {
+        Assert.assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(fields(actual.get(i)), fields(expected.get(i)), "sample " + i);
+        }
+    }
+
+    private static long[] fields(StorageSnapshot s) {
+        return new long[] {s.getCapturedAtMillis(), s.getSizeBytes(), s.getUsedBytes(), s.getAvailBytes(), s.getInodes(),
+                s.getInodesUsed(), s.getInodesFree()};
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(path -> path.toString().endsWith(".seg")).count();
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            List<Path> segments = new ArrayList<>();
+            paths.filter(path -> path.toString().endsWith(".seg")).forEach(segments::add);
+            Assert.assertEquals(segments.size(), 1);
+            return segments.get(0);
+        }
+    }
+}
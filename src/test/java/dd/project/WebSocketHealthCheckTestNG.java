@@ -39,6 +39,11 @@ public class WebSocketHealthCheckTestNG {
     private Map<String, String> httpUrls;
     private SoftAssert softAssert;
 
+    // Several tests probe the same endpoint; the suppressor hears one outcome per endpoint per run.
+    private final AlertSuppressor.Run endpointRun = AlertSuppressor.shared().run(AlertSuppressor.ENDPOINT_DOWN);
+    // The first failure of each endpoint this run, mailed in generateSummary if the run's outcome calls for it.
+    private final Map<String, Runnable> pendingAlerts = new ConcurrentHashMap<>();
+
     @BeforeClass
     public void setupTestData() {
         System.out.println("🚀 Starting AI Agent Health Check with TestNG at " + LocalDateTime.now().format(TIME_FORMATTER));
@@ -210,6 +215,7 @@ public class WebSocketHealthCheckTestNG {
                 sendAlertMail(name, errorMessage, "hi", "Divya D", 193, "Atlas Editor");
                 return false;
             }
+            recordHealthy(name);
             return true;
             
         } catch (Exception e) {
@@ -315,6 +321,7 @@ public class WebSocketHealthCheckTestNG {
 
         if (success[0]) {
             System.out.println("✅ WebSocket connection to " + serverName + " succeeded.");
+            recordHealthy(serverName);
             return true;
         } else {
             sendAlertMail(serverName, "No complete response received within timeout.", "222 1000", "Divya D", 193, "Neurovoyager");
@@ -322,7 +329,17 @@ public class WebSocketHealthCheckTestNG {
         }
     }
 
+    private void recordHealthy(String name) {
+        endpointRun.passed(name);
+    }
+
     private void sendAlertMail(String serverName, String reason, String query, String user, int userId, String page) {
+        // One mail per outage: the connect, error and timeout paths all land here for the same condition.
+        endpointRun.failed(serverName);
+        pendingAlerts.putIfAbsent(serverName, () -> mailAlert(serverName, reason, query, user, userId, page));
+    }
+
+    private void mailAlert(String serverName, String reason, String query, String user, int userId, String page) {
         if (EMAIL_USERNAME.isEmpty() || EMAIL_PASSWORD.isEmpty()) {
             System.out.println("⚠️ Email credentials not configured. Skipping email alert for: " + serverName);
             return;
@@ -387,9 +404,12 @@ public class WebSocketHealthCheckTestNG {
 
             message.setContent(content, "text/html");
 
-            System.out.println("📧 Sending TestNG alert email for " + serverName + "...");
-            Transport.send(message);
-            System.out.println("✅ Alert email sent successfully.");
+            // Sent from the outbox so a slow SMTP server does not count against the probe.
+            System.out.println("📧 Queueing TestNG alert email for " + serverName + "...");
+            AlertOutbox.shared().submit("TestNG alert email for " + serverName, () -> {
+                MailDispatcher.forSession(session).send(message);
+                System.out.println("✅ Alert email for " + serverName + " sent successfully.");
+            });
 
         } catch (MessagingException mex) {
             System.err.println("❌ Email sending failed: " + mex.getMessage());
@@ -398,6 +418,17 @@ public class WebSocketHealthCheckTestNG {
 
     @AfterClass
     public void generateSummary() {
+        for (Map.Entry<String, AlertSuppressor.Decision> outcome : endpointRun.finish().entrySet()) {
+            String name = outcome.getKey();
+            if (outcome.getValue().shouldNotify()) {
+                pendingAlerts.get(name).run();
+            } else if (outcome.getValue() == AlertSuppressor.Decision.RESOLVED) {
+                System.out.println("✅ " + name + " has recovered; the next failure will alert again.");
+            } else if (pendingAlerts.containsKey(name)) {
+                System.out.println("🔕 Alert for " + name + " suppressed (already reported or not yet confirmed)");
+            }
+        }
+        pendingAlerts.clear();
         System.out.println("🏁 TestNG Health Check Completed at " + LocalDateTime.now().format(TIME_FORMATTER));
         System.out.println("📊 Check TestNG reports for detailed results");
     }
@@ -110,6 +110,7 @@ public class WebSocketMultiHealthCheck {
                 sendAlertMail(name, errorMessage, "hi", "Divya D", 193, "Atlas Editor");
                 return false;
             }
+            recordHealthy(name);
             return true;
             
         } catch (Exception e) {
@@ -217,6 +218,7 @@ public class WebSocketMultiHealthCheck {
 
         if (success[0]) {
             System.out.println("✅ WebSocket connection to " + serverName + " succeeded.");
+            recordHealthy(serverName);
             return true;
         } else {
             sendAlertMail(serverName, "No complete response received within timeout.", "222 1000", "Divya D", 193, "Neurovoyager");
@@ -224,7 +226,18 @@ public class WebSocketMultiHealthCheck {
         }
     }
 
+    private static void recordHealthy(String name) {
+        if (AlertSuppressor.shared().success(AlertSuppressor.ENDPOINT_DOWN, name) == AlertSuppressor.Decision.RESOLVED) {
+            System.out.println("✅ " + name + " has recovered; the next failure will alert again.");
+        }
+    }
+
     private static void sendAlertMail(String serverName, String reason, String query, String user, int userId, String page) {
+        // One mail per outage: the connect, error and timeout paths all land here for the same condition.
+        if (!AlertSuppressor.shared().failure(AlertSuppressor.ENDPOINT_DOWN, serverName).shouldNotify()) {
+            System.out.println("🔕 Alert for " + serverName + " suppressed (already reported or not yet confirmed): " + reason);
+            return;
+        }
         // Skip email if credentials are not properly configured
         if (EMAIL_USERNAME.isEmpty() || EMAIL_PASSWORD.isEmpty()) {
             System.out.println("⚠️ Email credentials not configured. Skipping email alert for: " + serverName);
@@ -288,9 +301,12 @@ public class WebSocketMultiHealthCheck {
 
             message.setContent(content, "text/html");
 
-            System.out.println("📧 Sending alert email for " + serverName + "...");
-            Transport.send(message);
-            System.out.println("✅ Alert email sent successfully.");
+            // Sent from the outbox so a slow SMTP server does not count against the probe.
+            System.out.println("📧 Queueing alert email for " + serverName + "...");
+            AlertOutbox.shared().submit("alert email for " + serverName, () -> {
+                MailDispatcher.forSession(session).send(message);
+                System.out.println("✅ Alert email for " + serverName + " sent successfully.");
+            });
 
         } catch (MessagingException mex) {
             System.err.println("❌ Email sending failed: " + mex.getMessage());
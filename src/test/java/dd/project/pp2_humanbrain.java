@@ -1,7 +1,7 @@
 package dd.project;
 
-import java.io.InputStream;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.Date;
 import java.util.Properties;
 
@@ -9,104 +9,62 @@ import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.PasswordAuthentication;
 import javax.mail.Session;
-import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 
 import org.testng.annotations.Test;
 
-import com.jcraft.jsch.Channel;
-import com.jcraft.jsch.ChannelExec;
-import com.jcraft.jsch.JSch;
-
 public class pp2_humanbrain {
 	 @Test
 	    public void testStorageDetails() {
-	        JSch jsch = new JSch();
-	        com.jcraft.jsch.Session session = null;
 	        try {
 	            String user = "appUser";
 	            String host = "pp2.humanbrain.in";
 	            String password = "Brain@123";  // ⚠ Consider using environment variables instead.
 	            int port = 22;
-	            session = jsch.getSession(user, host, port);
-	            session.setPassword(password);
-	            session.setConfig("StrictHostKeyChecking", "no");
-	            session.connect();
-
-	            Channel channel = session.openChannel("exec");
-	            ((ChannelExec) channel).setCommand("ls -lh --time-style=long-iso /mnt/local/nvmestorage/postImageProcessor");
-	            channel.setInputStream(null);
-	            ((ChannelExec) channel).setErrStream(System.err);
-	            InputStream in = channel.getInputStream();
-	            channel.connect();
-
-	            byte[] tmp = new byte[1024];
-	            StringBuilder output = new StringBuilder();
-	            while (true) {
-	                while (in.available() > 0) {
-	                    int i = in.read(tmp, 0, 1024);
-	                    if (i < 0) break;
-	                    output.append(new String(tmp, 0, i));
-	                }
-	                if (channel.isClosed()) {
-	                    if (in.available() > 0) continue;
-	                    break;
-	                }
-	                Thread.sleep(1000);
-	            }
-
-	            channel.disconnect();
-	            session.disconnect();
-
-	            String[] lines = output.toString().split("\n");
-	            System.out.println("Files in  /mnt/local/nvmestorage/postImageProcessor:\n");
 
-	            int todayFileCount = 0;
-	            int oldFileCount = 0;
-	            StringBuilder todayFiles = new StringBuilder();
-	            StringBuilder oldFiles = new StringBuilder();
-	        
-	            // Define date format and today's date outside the loop
+	            // Only entries modified before today are selected on the host, so nothing else crosses the wire
 	            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-	            String todayDate = sdf.format(new Date());
+	            RemoteFileFilter oldFileFilter = new RemoteFileFilter().modifiedBefore(LocalDate.now());
 
-	            for (String line : lines) {
-	                System.out.println("DEBUG: " + line);  // Print each line for debugging
+	            // Summarized as the listing streams in, so heap and email size do not grow with the directory
+	            FileSummaryAggregator oldFiles = new FileSummaryAggregator();
 
-	                if (!line.startsWith("total") && !line.startsWith("drwx")) {
-	                    String[] parts = line.trim().split("\\s+", 8); // Splitting properly
-
-	                    if (parts.length >= 8) {
-	                        String fileDate = parts[5];   // Picking date in YYYY-MM-DD format
-	                        String fileName = parts[7];   // This should be the filename
-
-	                        System.out.println("Parsed Date: " + fileDate + ", File: " + fileName); // Debugging output
-
-	                        if (fileDate.equals(todayDate)) {
-	                            todayFileCount++;
-	                            todayFiles.append("<span style='color:red;'>" + fileDate + " - " + fileName + "</span><br>");
-	                        } else {
-	                            oldFileCount++;
-	                            oldFiles.append(fileDate + " - " + fileName + "<br>");
-	                        }
-	                    }
+	            System.out.println("Files in  /mnt/local/nvmestorage/postImageProcessor:\n");
+	            SshTarget target = new SshTarget(user, host, port, password);
+	            // Diffed against the previous run's snapshot so the same old files are not mailed again
+	            try (SnapshotDiff.Tracker changes = SnapshotDiff.track(target, "/mnt/local/nvmestorage/postImageProcessor")) {
+	                DirectoryListings.forEachMatching(target, "/mnt/local/nvmestorage/postImageProcessor", oldFileFilter, entry -> {
+    	                String fileDate = sdf.format(new Date(entry.getMtimeMillis()));
+    	                String fileName = entry.getPath();
+    	                System.out.println("Parsed Date: " + fileDate + ", File: " + fileName); // Debugging output
+
+    	                oldFiles.accept(entry);
+	                    changes.accept(entry);
+	                });
+	                SnapshotDiff.Report delta = changes.finish();
+	                System.out.println(delta);
+
+	                // **Mail when old files are added or changed; otherwise at most once per rule TTL until they are gone**
+	                String condition = host + ":/mnt/local/nvmestorage/postImageProcessor";
+	                AlertSuppressor.Decision decision = oldFiles.getCount() > 0
+	                        ? AlertSuppressor.shared().failure(AlertSuppressor.OLD_FILES, condition)
+	                        : AlertSuppressor.shared().success(AlertSuppressor.OLD_FILES, condition);
+	                if (decision.shouldNotify() || delta.hasAdditionsOrChanges()) {
+	                    sendEmailAlert(delta.toHtml() + oldFiles.toHtml(), oldFiles.getCount(), host);
+	                } else if (decision == AlertSuppressor.Decision.RESOLVED) {
+	                    System.out.println("✅ Old files on " + condition + " are gone.");
+	                } else {
+	                    System.out.println(oldFiles.getCount() == 0 ? "No old files." : oldFiles.getCount() + " old files, already reported. Email not sent.");
 	                }
 	            }
 
-	            // **Send email only if old files exist**
-	            if (oldFileCount > 0) {  
-	                sendEmailAlert(todayFiles.toString(), oldFiles.toString(), todayFileCount, oldFileCount, host);
-	            } else {
-	                System.out.println("No old files found. Email not sent.");
-	            }
-
 	        } catch (Exception e) {
 	            e.printStackTrace();
 	        }
 	    }  
 
-	    private void sendEmailAlert(String todayFiles, String oldFiles, int todayFileCount, int oldFileCount, String machineName) {
+	    private void sendEmailAlert(String summaryHtml, long oldFileCount, String machineName) {
 	        String[] to = {"annotation.divya@gmail.com"};
 	        String[] cc = {"venip@htic.iitm.ac.in"};
 	        String[] bcc = {"divya.d@htic.iitm.ac.in"};
@@ -145,14 +103,14 @@ public class pp2_humanbrain {
 	            String content = "<p>This is an automated alert:</p>" +
 	                    "<p>The directory <b> /mnt/local/nvmestorage/postImageProcessor</b> on machine <b style='color:blue;'>" + machineName + "</b> contains old files.</p>" +
 	                    "<p><b>" + oldFileCount + "</b> old files exist:</p>" +
-	                    "<pre>" + oldFiles + "</pre>" +
+	                    summaryHtml +
 	                    "<p>Please review and take necessary action.</p>" +
 	                    "<p>Best Regards,<br>Automated Monitoring System</p>";
 
 	            message.setContent(content, "text/html");
 	            System.out.println("Sending alert email...");
-	            Transport.send(message);
-	            System.out.println("Email sent successfully!");
+	            AlertDigest.shared().add(session, message);
+	            System.out.println("Email queued for the alert digest.");
 
 	        } catch (MessagingException mex) {
 	            mex.printStackTrace();
@@ -1,85 +1,45 @@
 package dd.project;
-import java.io.InputStream;
+import java.util.List;
 import java.util.Properties;
 
 import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.PasswordAuthentication;
 import javax.mail.Session;
-import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 
 import org.testng.annotations.Test;
 
-import com.jcraft.jsch.Channel;
-import com.jcraft.jsch.ChannelExec;
-import com.jcraft.jsch.JSch;
 public class test1 {
 	 @Test
      public void testStorageDetails() {
-         JSch jsch = new JSch();
-         com.jcraft.jsch.Session session = null;
          try {
              String user = "hbp";
              String host = "pp2.humanbrain.in";
              String password = "Health#123";
              int port = 22;
-             session = jsch.getSession(user, host, port);
-             session.setPassword(password);
-             session.setConfig("StrictHostKeyChecking", "no");
-             session.connect();
-             Channel channel = session.openChannel("exec");
-             ((ChannelExec) channel).setCommand("df -h /mnt/local/nvmestorage");
-             channel.setInputStream(null);
-             ((ChannelExec) channel).setErrStream(System.err);
-             InputStream in = channel.getInputStream();
-             channel.connect();
-             byte[] tmp = new byte[1024];
-             StringBuilder output = new StringBuilder();
-             while (true) {
-                 while (in.available() > 0) {
-                     int i = in.read(tmp, 0, 1024);
-                     if (i < 0) break;
-                     output.append(new String(tmp, 0, i));
-                 }
-                 if (channel.isClosed()) {
-                     if (in.available() > 0) continue;
-                     System.out.println("Exit status: " + channel.getExitStatus());
-                     break;
-                 }
-                 try {
-                     Thread.sleep(1000);
-                 } catch (Exception ee) {
-                     ee.printStackTrace();
-                 }
-             }
+             List<StorageSnapshot> rows = StorageProbes.forTarget(new SshTarget(user, host, port, password)).capacity("/mnt/local/nvmestorage");
 
-             String[] lines = output.toString().split("\n");
              System.out.println("+------------------------------------+------+-------+-------+--------+-------------------------+");
              System.out.println("|       Filesystem                   | Size | Used  | Avail |  Use%  | Mounted on               |");
              System.out.println("+------------------------------------+------+-------+-------+--------+-------------------------+");
 
+             StorageAlertEvaluator evaluator = new StorageAlertEvaluator(10);
              StringBuilder emailContent = new StringBuilder();
              boolean sendEmail = false;
-             for (int i = 1; i < lines.length; i++) {
-                 String[] parts = lines[i].trim().split("\\s+");
-                 System.out.printf("| %-34s | %4s | %5s | %5s | %6s | %-20s |\n", parts[0], parts[1], parts[2], parts[3], parts[4], parts[5]);
+             for (StorageSnapshot row : rows) {
+                 System.out.printf("| %-34s | %4s | %5s | %5s | %6s | %-20s |\n", row.getFilesystem(), StorageSnapshot.humanBytes(row.getSizeBytes()), StorageSnapshot.humanBytes(row.getUsedBytes()), StorageSnapshot.humanBytes(row.getAvailBytes()), row.getUsePercent() + "%", row.getMountedOn());
                  System.out.println("+------------------------------------+------+-------+-------+--------+-------------------------+");
 
-                 int usePercent = Integer.parseInt(parts[4].replace("%", ""));
-                 if (usePercent > 10) {
+                 if (evaluator.isOverThreshold(row)) {
                      sendEmail = true;
-                     if (parts[0].equals("df -h /mnt/local/nvmestorage")) {
-                         emailContent.append("pp2v15.humanbrain.in  - D2_nvmeShare used storage is exceeding 70%\n");
-                     }
+                     emailContent.append(evaluator.usageAlert("pp2v15.humanbrain.in", row, null)).append("<br>");
                  }
              }
              if (sendEmail) {
                  sendEmailAlert(emailContent.toString());
              }
-             channel.disconnect();
-             session.disconnect();
          } catch (Exception e) {
              e.printStackTrace();
              System.out.println("Test encountered an exception: " + e.getMessage());
@@ -136,9 +96,9 @@ public class test1 {
 	            	    "<br>Please clear unnecessary files to free up space and avoid storage-related issues.<br>" + messageBody, "text/html");
 
 	            System.out.println("sending...");
-	            // Send message
-	            Transport.send(message);
-	            System.out.println("Sent message successfully....");
+	            // Send message with the other alerts for the same recipients
+	            AlertDigest.shared().add(session, message);
+	            System.out.println("Queued message for the alert digest....");
 	        } catch (MessagingException mex) {
 	            mex.printStackTrace();
 	        }